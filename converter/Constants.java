@@ -14,4 +14,19 @@ class Constants {
      * so that full 32 bits can be used as magnitude
      */
     public static final long MASK = 0xffffffffL;
+
+    public static final int MAX_RADIX = 36;
+
+    /**
+     * Radix 1 is unary, the number of digits is the value
+     */
+    public static final int MIN_RADIX = 1;
+
+    public static final char MINUS = '-';
+
+    public static final char PLUS = '+';
+
+    public static final char DOT = '.';
+
+    public static final String EMPTY_STRING = "";
 }
@@ -1,30 +1,29 @@
 package converter;
 
-import java.math.BigInteger;
+import java.nio.file.Paths;
 import java.util.Scanner;
+import java.util.concurrent.ForkJoinPool;
+
+import static converter.Constants.DOT;
+import static converter.Constants.EMPTY_STRING;
+import static converter.Constants.MINUS;
+import static converter.Constants.PLUS;
 
 class RadixConvertor {
     protected static final String DIGITS;
-    protected static final int MAX_RADIX;
-    protected static final int MIN_RADIX;
     protected static final int DECIMAL;
     protected static final int BINARY;
     protected static final int OCTAL;
     protected static final int HEXADECIMAL;
-    protected static final char MINUS;
-    protected static final char PLUS;
-    protected static final char DOT;
-    protected static final String EMPTY_STRING;
     protected final int radix;
+    /**
+     * Used for the integer part of every conversion,
+     * replaced when the pool or threshold is configured
+     */
+    private static volatile ParallelRadixConvertor parallelConvertor = new ParallelRadixConvertor();
 
     static {
         DIGITS = "0123456789ABCDEFGHIJKLMNOPQRSTUVWXYZ";
-        MINUS = '-';
-        PLUS = '+';
-        DOT = '.';
-        EMPTY_STRING = "";
-        MAX_RADIX = 36;
-        MIN_RADIX = 1;
         DECIMAL = 10;
         BINARY = 2;
         OCTAL = 8;
@@ -35,13 +34,25 @@ class RadixConvertor {
         this.radix = radix;
     }
 
+    static void useParallelConvertor(ParallelRadixConvertor convertor) {
+        parallelConvertor = convertor;
+    }
+
     private static String fromARadixToOther(String number, int fromRadix, int toRadix) throws IllegalArgumentException {
-        if (fromRadix < MIN_RADIX || fromRadix > MAX_RADIX) {
-            throw new NumberFormatException(String.format("Invalid from radix provided expected [%d - %d] found %d", MIN_RADIX, MAX_RADIX, fromRadix));
-        }
-        if (toRadix < MIN_RADIX || toRadix > MAX_RADIX) {
-            throw new NumberFormatException(String.format("Invalid to radix provided expected [%d - %d] found %d", MIN_RADIX, MAX_RADIX, toRadix));
-        }
+        ParsedNumber.checkRadix("from", fromRadix);
+        ParsedNumber.checkRadix("to", toRadix);
+        return parse(number, fromRadix).toRadix(toRadix);
+    }
+
+    /**
+     * Validates the format of the number, the digits themselves
+     * are checked when the number is first converted
+     * @param number the number with an optional sign and fraction
+     * @param fromRadix the radix of the number
+     * @return the number ready to be printed in any radix
+     */
+    static ParsedNumber parse(String number, int fromRadix) {
+        ParsedNumber.checkRadix("from", fromRadix);
         boolean negate = false;
         int cursor = 0;
         int len = number.length();
@@ -67,10 +78,6 @@ class RadixConvertor {
         if (index1 != index2) {
             throw new NumberFormatException("Wrong number format multiple '.' occurrences");
         }
-        // If both radixes are same just return the same ans
-        if (fromRadix == toRadix) {
-            return number;
-        }
         String integer;
         String fraction = EMPTY_STRING;
         if (index1 != -1) {
@@ -79,54 +86,11 @@ class RadixConvertor {
         } else {
             integer = number.substring(cursor);
         }
-        StringBuilder sb = new StringBuilder();
-        if (negate) {
-            sb.append(MINUS);
-        }
-        if (!EMPTY_STRING.equals(integer)) {
-            sb.append(integerConversion(integer, fromRadix, toRadix));
-        }
-        if (!EMPTY_STRING.equals(fraction)) {
-            sb.append(DOT);
-            sb.append(fractionConversion(fraction, fromRadix, toRadix));
-        }
-        return sb.toString();
-    }
-
-    private static String integerConversion(String integer, int fromRadix, int toRadix) {
-        if (fromRadix == 1) {
-            int number = integer.length();
-            return new BigInteger(String.valueOf(number), DECIMAL).toString(toRadix);
-        }
-        if (toRadix == 1) {
-            int number = new BigInteger(integer, fromRadix).intValue();
-            char one = '1';
-            return String.valueOf(one).repeat(Math.max(0, number));
-        }
-        return new BigInteger(integer, fromRadix).toString(toRadix);
+        return new ParsedNumber(number, fromRadix, negate, integer, fraction, parallelConvertor);
     }
 
-    private static String fractionConversion(String fractional, int fromRadix, int toRadix) {
-        double value = 0;
-        double div = 1.0;
-        double x;
-        for (int i = 0; i < fractional.length(); i++) {
-            x = Character.digit(fractional.charAt(i), fromRadix);
-            div *= fromRadix;
-            value += x / div;
-        }
-        StringBuilder sb = new StringBuilder();
-        int max_char = 5;
-        int chars = 0;
-        double delta = 0.0000000000000001;
-        while (value >= delta && chars < max_char) {
-            value *= toRadix;
-            x = (int) value;
-            value -= x;
-            sb.append(Character.forDigit((int) x, toRadix));
-            chars++;
-        }
-        return sb.toString();
+    public ParsedNumber parse(String number) {
+        return parse(number, this.radix);
     }
 
     public String toDecimal(String number) {
@@ -200,7 +164,61 @@ class DecimalConvertor extends RadixConvertor {
 }
 
 public class Main {
+    private static int parsePositive(String arg, int defaultValue) {
+        try {
+            int value = Integer.parseInt(arg);
+            return value > 0 ? value : defaultValue;
+        } catch (NumberFormatException | NullPointerException e) {
+            return defaultValue;
+        }
+    }
+
+    /**
+     * @param arg comma separated radixes
+     * @return the radixes or null if there are none
+     */
+    private static int[] parseRadixes(String arg) {
+        if (arg == null || arg.isEmpty()) {
+            return null;
+        }
+        String[] parts = arg.split(",");
+        int[] radixes = new int[parts.length];
+        for (int i = 0; i < parts.length; i++) {
+            radixes[i] = Integer.parseInt(parts[i].trim());
+        }
+        return radixes;
+    }
+
     public static void main(String[] args) {
+        int threads = 0;
+        int[] targets = null;
+        int threshold = ParallelRadixConvertor.DEFAULT_THRESHOLD;
+        int len = args.length / 2;
+        for (int i = 0; i < len; i++) {
+            switch (args[2 * i]) {
+                case "-threads":
+                    threads = parsePositive(args[2 * i + 1], 0);
+                    break;
+                case "-threshold":
+                    threshold = Math.max(ParallelRadixConvertor.MIN_THRESHOLD, parsePositive(args[2 * i + 1], threshold));
+                    break;
+                case "-powers":
+                    RadixPowers.useSnapshot(new PowerTableSnapshot(Paths.get(args[2 * i + 1])));
+                    break;
+                case "-to":
+                    try {
+                        targets = parseRadixes(args[2 * i + 1]);
+                    } catch (NumberFormatException e) {
+                        System.out.println("error " + e.getMessage());
+                        return;
+                    }
+                    break;
+                default:
+                    break;
+            }
+        }
+        ForkJoinPool pool = threads > 0 ? new ForkJoinPool(threads) : ForkJoinPool.commonPool();
+        RadixConvertor.useParallelConvertor(new ParallelRadixConvertor(pool, threshold));
         Scanner sc = new Scanner(System.in);
         int fromRadix = 2;
         String number = "";
@@ -208,10 +226,19 @@ public class Main {
         try {
             fromRadix = sc.nextInt();
             number = sc.next();
-            toRadix = sc.nextInt();
             try {
                 RadixConvertor cv = new RadixConvertor(fromRadix);
-                System.out.println(cv.toARadix(number, toRadix));
+                if (targets != null) {
+                    /* parsed once, each target reuses the value and
+                       nothing is printed unless every target converts
+                     */
+                    for (String converted : cv.parse(number).toRadixes(targets)) {
+                        System.out.println(converted);
+                    }
+                } else {
+                    toRadix = sc.nextInt();
+                    System.out.println(cv.toARadix(number, toRadix));
+                }
             }catch (NumberFormatException e) {
                 System.out.println("error " + e.getMessage());
             }
@@ -219,5 +246,8 @@ public class Main {
             System.out.println("error: " + e.getMessage());
         }
         sc.close();
+        if (pool != ForkJoinPool.commonPool()) {
+            pool.shutdown();
+        }
     }
 }
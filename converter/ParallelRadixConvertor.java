@@ -0,0 +1,217 @@
+package converter;
+
+import java.math.BigInteger;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveTask;
+
+/**
+ * Divide and conquer conversion of integers between radixes.
+ * Parsing splits the digits into a high and a low block around
+ * radix<sup>2<sup>k</sup></sup> and printing splits the value by
+ * dividing it by radix<sup>2<sup>k</sup></sup>, the two halves are
+ * independent so they are handed to a {@link ForkJoinPool} when they
+ * are longer than the threshold. Blocks under the threshold are
+ * converted by {@link BigInteger} itself, so the result is always
+ * the same as the one of the sequential conversion.
+ */
+class ParallelRadixConvertor {
+    /**
+     * Number of digits below which a block is
+     * converted on the current thread
+     */
+    static final int DEFAULT_THRESHOLD;
+    /**
+     * A single digit block cannot be split any further
+     */
+    static final int MIN_THRESHOLD;
+    private static final char ZERO;
+
+    static {
+        DEFAULT_THRESHOLD = 1 << 14;
+        MIN_THRESHOLD = 2;
+        ZERO = '0';
+    }
+
+    private final ForkJoinPool pool;
+    private final int threshold;
+
+    ParallelRadixConvertor() {
+        this(ForkJoinPool.commonPool(), DEFAULT_THRESHOLD);
+    }
+
+    /**
+     * @param pool the pool the subtrees are forked in
+     * @param threshold number of digits below which a block
+     *                  is not split any further
+     */
+    ParallelRadixConvertor(ForkJoinPool pool, int threshold) {
+        if (threshold < MIN_THRESHOLD) {
+            throw new IllegalArgumentException(String.format("Threshold must be at least %d found %d", MIN_THRESHOLD, threshold));
+        }
+        this.pool = pool;
+        this.threshold = threshold;
+    }
+
+    String convert(String integer, int fromRadix, int toRadix) {
+        return toString(parse(integer, fromRadix), toRadix);
+    }
+
+    /**
+     * @param digits unsigned digits in the given radix
+     * @param radix the radix of the digits
+     * @return the value of the digits
+     */
+    BigInteger parse(String digits, int radix) {
+        if (digits.length() <= threshold) {
+            return new BigInteger(digits, radix);
+        }
+        return pool.invoke(new ParseTask(digits, 0, digits.length(), RadixPowers.of(radix)));
+    }
+
+    /**
+     * @param value the value to print
+     * @param radix the radix to print in
+     * @return the same as {@link BigInteger#toString(int)}
+     */
+    String toString(BigInteger value, int radix) {
+        if (value.signum() < 0) {
+            return '-' + toString(value.negate(), radix);
+        }
+        if (Integer.bitCount(radix) == 1) {
+            return toPowerOfTwoString(value, radix);
+        }
+        if (estimateDigits(value, radix) <= threshold) {
+            return value.toString(radix);
+        }
+        return pool.invoke(new PrintTask(value, 0, RadixPowers.of(radix)));
+    }
+
+    /**
+     * Reads the digits of a power of two radix straight out of
+     * the binary representation, no division is needed
+     * @param value a non negative value
+     * @param radix a power of two radix
+     * @return the same as {@link BigInteger#toString(int)}
+     */
+    static String toPowerOfTwoString(BigInteger value, int radix) {
+        if (value.signum() == 0) {
+            return String.valueOf(ZERO);
+        }
+        int bits = Integer.numberOfTrailingZeros(radix);
+        int mask = radix - 1;
+        byte[] bytes = value.toByteArray();
+        int last = bytes.length - 1;
+        int digits = (value.bitLength() + bits - 1) / bits;
+        char[] out = new char[digits];
+        for (int d = 0; d < digits; d++) {
+            /* a digit has at most 5 bits so it never
+               spans more than two bytes
+             */
+            long bit = (long) d * bits;
+            int index = last - (int) (bit >>> 3);
+            int word = bytes[index] & 0xff;
+            if (index > 0) {
+                word |= (bytes[index - 1] & 0xff) << Byte.SIZE;
+            }
+            out[digits - 1 - d] = Character.forDigit((word >>> (bit & 7)) & mask, radix);
+        }
+        return new String(out);
+    }
+
+    private static long estimateDigits(BigInteger value, int radix) {
+        return (long) Math.ceil(value.bitLength() / (Math.log(radix) / Math.log(2)));
+    }
+
+    /**
+     * @param n the number of digits, at least 2
+     * @return the largest k with 2<sup>k</sup> &lt; n
+     */
+    private static int splitLevel(long n) {
+        return 63 - Long.numberOfLeadingZeros(n - 1);
+    }
+
+    private class ParseTask extends RecursiveTask<BigInteger> {
+        private static final long serialVersionUID = 1L;
+        private final String digits;
+        private final int start;
+        private final int end;
+        private final RadixPowers powers;
+
+        ParseTask(String digits, int start, int end, RadixPowers powers) {
+            this.digits = digits;
+            this.start = start;
+            this.end = end;
+            this.powers = powers;
+        }
+
+        @Override
+        protected BigInteger compute() {
+            int n = end - start;
+            if (n <= threshold) {
+                return new BigInteger(digits.substring(start, end), powers.radix());
+            }
+            int level = splitLevel(n);
+            int split = end - (1 << level);
+            ParseTask high = new ParseTask(digits, start, split, powers);
+            high.fork();
+            BigInteger low = new ParseTask(digits, split, end, powers).compute();
+            return high.join().multiply(powers.power(level)).add(low);
+        }
+    }
+
+    private class PrintTask extends RecursiveTask<String> {
+        private static final long serialVersionUID = 1L;
+        private final BigInteger value;
+        /**
+         * Number of digits to left pad to with zeros,
+         * 0 for the most significant block
+         */
+        private final long width;
+        private final RadixPowers powers;
+
+        PrintTask(BigInteger value, long width, RadixPowers powers) {
+            this.value = value;
+            this.width = width;
+            this.powers = powers;
+        }
+
+        @Override
+        protected String compute() {
+            long digits = Math.max(width, estimateDigits(value, powers.radix()));
+            if (digits <= threshold) {
+                return pad(value.toString(powers.radix()));
+            }
+            int level = splitLevel(digits);
+            /* the divisor has to be at most half as long as the
+               value for the quotient to be shorter than the value
+             */
+            while (level > 0 && 2L * powers.power(level).bitLength() - 1 > value.bitLength()) {
+                level -= 1;
+            }
+            BigInteger[] qr = value.divideAndRemainder(powers.power(level));
+            if (qr[0].signum() == 0) {
+                /* only a padded block can be shorter than
+                   the divisor so the high half is all zeros
+                 */
+                return pad(value.toString(powers.radix()));
+            }
+            long lowWidth = 1L << level;
+            PrintTask low = new PrintTask(qr[1], lowWidth, powers);
+            PrintTask high = new PrintTask(qr[0], width == 0 ? 0 : width - lowWidth, powers);
+            high.fork();
+            String lowDigits = low.compute();
+            return high.join() + lowDigits;
+        }
+
+        private String pad(String digits) {
+            if (digits.length() >= width) {
+                return digits;
+            }
+            StringBuilder sb = new StringBuilder((int) width);
+            for (long i = digits.length(); i < width; i++) {
+                sb.append(ZERO);
+            }
+            return sb.append(digits).toString();
+        }
+    }
+}
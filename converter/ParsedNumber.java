@@ -0,0 +1,135 @@
+package converter;
+
+import java.math.BigInteger;
+import java.util.ArrayList;
+import java.util.List;
+
+import static converter.Constants.*;
+
+/**
+ * A number which has been validated once and is converted
+ * to its integer value the first time a radix other than its
+ * own is asked for. Every later radix reuses that value, so
+ * printing the same number in N radixes costs one parse and
+ * N prints instead of N full conversions.
+ */
+class ParsedNumber {
+    private final String source;
+    private final int fromRadix;
+    private final boolean negate;
+    private final String integer;
+    private final String fraction;
+    private final ParallelRadixConvertor convertor;
+    /**
+     * Value of the integer part, computed on first use
+     */
+    private BigInteger value;
+
+    ParsedNumber(String source, int fromRadix, boolean negate, String integer, String fraction,
+                 ParallelRadixConvertor convertor) {
+        this.source = source;
+        this.fromRadix = fromRadix;
+        this.negate = negate;
+        this.integer = integer;
+        this.fraction = fraction;
+        this.convertor = convertor;
+    }
+
+    /**
+     * @param direction "from" or "to", used in the message
+     * @param radix the radix to check
+     * @throws NumberFormatException if the radix is out of range
+     */
+    static void checkRadix(String direction, int radix) {
+        if (radix < MIN_RADIX || radix > MAX_RADIX) {
+            throw new NumberFormatException(String.format("Invalid %s radix provided expected [%d - %d] found %d", direction, MIN_RADIX, MAX_RADIX, radix));
+        }
+    }
+
+    private BigInteger integerValue() {
+        if (value == null) {
+            if (fromRadix == 1) {
+                value = BigInteger.valueOf(integer.length());
+            } else {
+                value = convertor.parse(integer, fromRadix);
+            }
+        }
+        return value;
+    }
+
+    /**
+     * @param toRadix the radix to print in
+     * @return the number in the given radix
+     * @throws NumberFormatException if the radix is out of range or
+     * the digits are not valid for the radix of the number
+     */
+    String toRadix(int toRadix) {
+        checkRadix("to", toRadix);
+        // If both radixes are same just return the same ans
+        if (fromRadix == toRadix) {
+            return source;
+        }
+        StringBuilder sb = new StringBuilder();
+        if (negate) {
+            sb.append(MINUS);
+        }
+        if (!EMPTY_STRING.equals(integer)) {
+            sb.append(integerConversion(toRadix));
+        }
+        if (!EMPTY_STRING.equals(fraction)) {
+            sb.append(DOT);
+            sb.append(fractionConversion(toRadix));
+        }
+        return sb.toString();
+    }
+
+    /**
+     * Every radix is checked before any conversion is done,
+     * so an invalid one fails the call without partial results
+     * @param radixes the radixes to print in
+     * @return the number in each of the radixes in the order
+     * given, a radix given twice appears twice
+     */
+    List<String> toRadixes(int... radixes) {
+        for (int toRadix : radixes) {
+            checkRadix("to", toRadix);
+        }
+        List<String> result = new ArrayList<>(radixes.length);
+        for (int toRadix : radixes) {
+            result.add(toRadix(toRadix));
+        }
+        return result;
+    }
+
+    private String integerConversion(int toRadix) {
+        if (toRadix == 1) {
+            int number = integerValue().intValue();
+            char one = '1';
+            return String.valueOf(one).repeat(Math.max(0, number));
+        }
+        return convertor.toString(integerValue(), toRadix);
+    }
+
+    private String fractionConversion(int toRadix) {
+        double value = 0;
+        double div = 1.0;
+        double x;
+        for (int i = 0; i < fraction.length(); i++) {
+            x = Character.digit(fraction.charAt(i), fromRadix);
+            div *= fromRadix;
+            value += x / div;
+        }
+        StringBuilder sb = new StringBuilder();
+        int max_char = 5;
+        int chars = 0;
+        double delta = 0.0000000000000001;
+        while (value >= delta && chars < max_char) {
+            value *= toRadix;
+            x = (int) value;
+            value -= x;
+            sb.append(Character.forDigit((int) x, toRadix));
+            chars++;
+        }
+        return sb.toString();
+    }
+}
@@ -0,0 +1,321 @@
+package converter;
+
+import java.io.*;
+import java.math.BigInteger;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.*;
+import java.nio.file.attribute.PosixFileAttributeView;
+import java.nio.file.attribute.PosixFilePermissions;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.zip.CRC32;
+
+/**
+ * A file of precomputed radix<sup>2<sup>k</sup></sup> tables so a
+ * short lived conversion does not have to square its way up to the
+ * powers it needs. The file is mapped the first time a power is
+ * asked for and each table is read in place, a level is only turned
+ * into a {@link BigInteger} when it is used.
+ * <p>
+ * Layout, all integers big endian:
+ * <pre>
+ * header     magic int, version int, table count int, CRC32 of the directory int
+ * directory  per table: radix int, levels int, offset long, length long, CRC32 of the table int
+ * table      per level k: length int, the bytes of radix^(2^k) as in BigInteger.toByteArray()
+ * </pre>
+ * A file with the wrong magic, version or checksum is ignored
+ * and the powers are computed as if there was no file.
+ */
+class PowerTableSnapshot {
+    private static final int MAGIC;
+    private static final int VERSION;
+    private static final int HEADER_SIZE;
+    private static final int ENTRY_SIZE;
+
+    static {
+        MAGIC = 0x52505754;
+        VERSION = 1;
+        HEADER_SIZE = 4 * Integer.BYTES;
+        ENTRY_SIZE = 3 * Integer.BYTES + 2 * Long.BYTES;
+    }
+
+    private static class Table {
+        final int levels;
+        final long offset;
+        final long length;
+        final int crc;
+        /**
+         * Position of each level in the mapped file,
+         * filled when the checksum has been verified
+         */
+        int[] positions;
+        boolean corrupt;
+
+        Table(int levels, long offset, long length, int crc) {
+            this.levels = levels;
+            this.offset = offset;
+            this.length = length;
+            this.crc = crc;
+        }
+    }
+
+    private final Path path;
+    private boolean opened;
+    private MappedByteBuffer buffer;
+    private final Map<Integer, Table> tables = new HashMap<>();
+
+    PowerTableSnapshot(Path path) {
+        this.path = path;
+    }
+
+    /**
+     * @param radix the radix
+     * @param level the level k
+     * @return radix<sup>2<sup>k</sup></sup> or null if the file does not have it
+     */
+    synchronized BigInteger power(int radix, int level) {
+        if (!opened) {
+            opened = true;
+            open();
+        }
+        Table table = tables.get(radix);
+        if (table == null || level >= table.levels || !verify(radix, table)) {
+            return null;
+        }
+        int position = table.positions[level];
+        int length = buffer.getInt(position);
+        if (length < 0) {
+            return null;
+        }
+        byte[] bytes = new byte[length];
+        region(position + Integer.BYTES, length).get(bytes);
+        return new BigInteger(bytes);
+    }
+
+    private void open() {
+        try (FileChannel channel = FileChannel.open(path, StandardOpenOption.READ)) {
+            if (channel.size() > Integer.MAX_VALUE) {
+                throw new IOException("file larger than 2 GB");
+            }
+            MappedByteBuffer mapped = channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size());
+            if (mapped.limit() < HEADER_SIZE || mapped.getInt(0) != MAGIC) {
+                throw new IOException("not a power table file");
+            }
+            if (mapped.getInt(4) != VERSION) {
+                throw new IOException("unsupported version " + mapped.getInt(4));
+            }
+            int count = mapped.getInt(8);
+            if (count < 0 || (long) HEADER_SIZE + (long) count * ENTRY_SIZE > mapped.limit()) {
+                throw new IOException("truncated directory");
+            }
+            CRC32 crc = new CRC32();
+            crc.update(region(mapped, HEADER_SIZE, count * ENTRY_SIZE));
+            if ((int) crc.getValue() != mapped.getInt(12)) {
+                throw new IOException("directory checksum mismatch");
+            }
+            for (int i = 0; i < count; i++) {
+                int entry = HEADER_SIZE + i * ENTRY_SIZE;
+                Table table = new Table(mapped.getInt(entry + 4), mapped.getLong(entry + 8),
+                        mapped.getLong(entry + 16), mapped.getInt(entry + 24));
+                if (table.offset < 0 || table.length < 0 || table.offset + table.length > mapped.limit()) {
+                    throw new IOException("table outside of the file");
+                }
+                tables.put(mapped.getInt(entry), table);
+            }
+            buffer = mapped;
+        } catch (IOException | UncheckedIOException | SecurityException e) {
+            tables.clear();
+            System.err.println("warning: ignoring power table " + path + ": " + e.getMessage());
+        }
+    }
+
+    private ByteBuffer region(int position, int length) {
+        return region(buffer, position, length);
+    }
+
+    /**
+     * @return a view of part of the buffer, nothing is copied
+     */
+    private static ByteBuffer region(ByteBuffer buffer, int position, int length) {
+        ByteBuffer view = buffer.duplicate();
+        view.limit(position + length).position(position);
+        return view;
+    }
+
+    /**
+     * Checks the table the first time it is used
+     * and records where each of its levels starts
+     */
+    private boolean verify(int radix, Table table) {
+        if (table.positions != null) {
+            return true;
+        }
+        if (table.corrupt) {
+            return false;
+        }
+        CRC32 crc = new CRC32();
+        crc.update(region((int) table.offset, (int) table.length));
+        int[] positions = (int) crc.getValue() == table.crc ? levelPositions(table) : null;
+        if (positions == null) {
+            table.corrupt = true;
+            System.err.println("warning: ignoring corrupt power table of radix " + radix + " in " + path);
+            return false;
+        }
+        table.positions = positions;
+        return true;
+    }
+
+    /**
+     * Walks the length prefixed levels of a table, in long
+     * arithmetic so a bad length cannot wrap around
+     * @return where each level starts or null if a length is
+     * negative, runs past the table or the levels do not fill it
+     */
+    private int[] levelPositions(Table table) {
+        if (table.levels < 0) {
+            return null;
+        }
+        int[] positions = new int[table.levels];
+        long position = table.offset;
+        long end = table.offset + table.length;
+        for (int i = 0; i < table.levels; i++) {
+            if (position > end - Integer.BYTES) {
+                return null;
+            }
+            int length = buffer.getInt((int) position);
+            if (length < 0 || position + Integer.BYTES + length > end) {
+                return null;
+            }
+            positions[i] = (int) position;
+            position += Integer.BYTES + length;
+        }
+        return position == end ? positions : null;
+    }
+
+    /**
+     * Writes the tables of the given radixes with enough levels
+     * for numbers of up to maxDigits digits. The file is written
+     * next to the target and moved over it once complete,
+     * keeping the permissions of the file it replaces.
+     * @param path the file to write
+     * @param maxDigits the longest number the tables are for
+     * @param radixes the radixes to write tables for
+     * @throws IllegalArgumentException if maxDigits is not positive
+     * @throws IOException if the file cannot be written or would be
+     * too large to be mapped when loaded
+     */
+    static void write(Path path, long maxDigits, int[] radixes) throws IOException {
+        if (maxDigits <= 0) {
+            throw new IllegalArgumentException("maxDigits must be positive, found " + maxDigits);
+        }
+        int levels = 1;
+        while ((1L << levels) < maxDigits && levels < Long.SIZE - 2) {
+            levels += 1;
+        }
+        double size = HEADER_SIZE + (double) radixes.length * ENTRY_SIZE;
+        for (int radix : radixes) {
+            for (int level = 0; level < levels; level++) {
+                // radix^(2^k) has 2^k * log2(radix) bits, toByteArray() adds a sign bit
+                size += Integer.BYTES + Math.scalb(Math.log(radix) / Math.log(2), level) / 8 + 1;
+            }
+        }
+        if (size > Integer.MAX_VALUE) {
+            throw new IOException(String.format("tables for %d digits would take %.0f bytes, more than the 2 GB that can be mapped", maxDigits, size));
+        }
+        Path temp = Files.createTempFile(path.toAbsolutePath().getParent(), path.getFileName().toString(), ".tmp");
+        try {
+            copyPermissions(path, temp);
+            try (FileChannel channel = FileChannel.open(temp, StandardOpenOption.WRITE, StandardOpenOption.TRUNCATE_EXISTING)) {
+                ByteBuffer directory = ByteBuffer.allocate(radixes.length * ENTRY_SIZE);
+                long offset = HEADER_SIZE + (long) radixes.length * ENTRY_SIZE;
+                channel.position(offset);
+                for (int radix : radixes) {
+                    RadixPowers powers = RadixPowers.of(radix);
+                    CRC32 crc = new CRC32();
+                    long length = 0;
+                    for (int level = 0; level < levels; level++) {
+                        byte[] bytes = powers.power(level).toByteArray();
+                        ByteBuffer record = ByteBuffer.allocate(Integer.BYTES + bytes.length);
+                        record.putInt(bytes.length).put(bytes).flip();
+                        crc.update(record.duplicate());
+                        length += record.remaining();
+                        while (record.hasRemaining()) {
+                            channel.write(record);
+                        }
+                    }
+                    directory.putInt(radix).putInt(levels).putLong(offset).putLong(length).putInt((int) crc.getValue());
+                    offset += length;
+                }
+                directory.flip();
+                CRC32 crc = new CRC32();
+                crc.update(directory.duplicate());
+                ByteBuffer header = ByteBuffer.allocate(HEADER_SIZE);
+                header.putInt(MAGIC).putInt(VERSION).putInt(radixes.length).putInt((int) crc.getValue()).flip();
+                channel.position(0);
+                while (header.hasRemaining()) {
+                    channel.write(header);
+                }
+                while (directory.hasRemaining()) {
+                    channel.write(directory);
+                }
+                channel.force(true);
+            }
+            Files.move(temp, path, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        } finally {
+            Files.deleteIfExists(temp);
+        }
+    }
+
+    /**
+     * A temporary file is only readable by its owner, so it gets the
+     * permissions of the file it is going to replace, or the usual
+     * rw-r--r-- for a new file. Nothing is done where the file system
+     * has no POSIX permissions.
+     */
+    private static void copyPermissions(Path from, Path to) throws IOException {
+        PosixFileAttributeView view = Files.getFileAttributeView(to, PosixFileAttributeView.class);
+        if (view == null) {
+            return;
+        }
+        view.setPermissions(Files.exists(from) ? Files.getPosixFilePermissions(from)
+                : PosixFilePermissions.fromString("rw-r--r--"));
+    }
+
+    /**
+     * Generates or refreshes a power table file
+     * usage: file maxDigits [radix ...]
+     * all radixes from 2 to 36 are written when none is given
+     */
+    public static void main(String[] args) {
+        if (args.length < 2) {
+            System.out.println("usage: file maxDigits [radix ...]");
+            return;
+        }
+        try {
+            long maxDigits = Long.parseLong(args[1]);
+            if (maxDigits <= 0) {
+                throw new NumberFormatException("Invalid maxDigits " + args[1]);
+            }
+            int[] radixes;
+            if (args.length > 2) {
+                radixes = new int[args.length - 2];
+                for (int i = 2; i < args.length; i++) {
+                    radixes[i - 2] = Integer.parseInt(args[i]);
+                    if (radixes[i - 2] < 2 || radixes[i - 2] > Constants.MAX_RADIX) {
+                        throw new NumberFormatException("Invalid radix " + args[i]);
+                    }
+                }
+            } else {
+                radixes = new int[Constants.MAX_RADIX - 1];
+                for (int i = 0; i < radixes.length; i++) {
+                    radixes[i] = i + 2;
+                }
+            }
+            write(Paths.get(args[0]), maxDigits, radixes);
+        } catch (NumberFormatException | IOException e) {
+            System.out.println("error " + e.getMessage());
+        }
+    }
+}
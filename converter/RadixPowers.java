@@ -0,0 +1,90 @@
+package converter;
+
+import java.math.BigInteger;
+import java.util.Arrays;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * The table of radix<sup>2<sup>k</sup></sup> used to split a number
+ * into halves while converting it. There is one table per radix
+ * shared by every conversion, a level is computed the first time
+ * it is needed and kept afterwards. When a {@link PowerTableSnapshot}
+ * is in use a level found there is loaded instead of computed.
+ */
+class RadixPowers {
+    private static final ConcurrentHashMap<Integer, RadixPowers> TABLES = new ConcurrentHashMap<>();
+    private static volatile PowerTableSnapshot snapshot;
+
+    private final int radix;
+    private final PowerTableSnapshot source;
+    /**
+     * Replaced by a longer copy when a new level is
+     * needed so readers never have to lock, a level
+     * not needed yet may be null
+     */
+    private volatile BigInteger[] powers;
+
+    private RadixPowers(int radix) {
+        this.radix = radix;
+        this.source = snapshot;
+        this.powers = new BigInteger[]{BigInteger.valueOf(radix)};
+    }
+
+    /**
+     * Takes the powers from the given file from now on,
+     * tables already in use are not affected
+     * @param tables the file or null to compute every power
+     */
+    static void useSnapshot(PowerTableSnapshot tables) {
+        snapshot = tables;
+    }
+
+    static RadixPowers of(int radix) {
+        return TABLES.computeIfAbsent(radix, RadixPowers::new);
+    }
+
+    int radix() {
+        return radix;
+    }
+
+    /**
+     * @param level the level k
+     * @return radix<sup>2<sup>k</sup></sup> which has 2<sup>k</sup> + 1 digits
+     */
+    BigInteger power(int level) {
+        BigInteger[] table = powers;
+        if (level < table.length && table[level] != null) {
+            return table[level];
+        }
+        return load(level);
+    }
+
+    private synchronized BigInteger load(int level) {
+        BigInteger[] table = powers;
+        if (level >= table.length) {
+            table = Arrays.copyOf(table, level + 1);
+        }
+        BigInteger power = table[level];
+        if (power == null) {
+            power = compute(table, level);
+        }
+        powers = table;
+        return power;
+    }
+
+    /**
+     * Loads the level from the snapshot or squares the level below
+     * it, which is loaded the same way if it is not there yet
+     */
+    private BigInteger compute(BigInteger[] table, int level) {
+        BigInteger power = source == null ? null : source.power(radix, level);
+        if (power == null) {
+            if (table[level - 1] == null) {
+                compute(table, level - 1);
+            }
+            power = table[level - 1].multiply(table[level - 1]);
+        }
+        table[level] = power;
+        return power;
+    }
+}
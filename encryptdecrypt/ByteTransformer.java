@@ -0,0 +1,97 @@
+package encryptdecrypt;
+
+import java.nio.ByteBuffer;
+import java.nio.CharBuffer;
+import java.nio.charset.*;
+
+/**
+ * Transforms encoded text in place without decoding it,
+ * offered by {@link EncryptionStrategy#byteStream} for the
+ * charsets where a byte can be mapped on its own
+ */
+interface ByteTransformer {
+    /**
+     * Transforms the bytes between position and limit,
+     * neither of which is changed
+     * @param bytes the buffer to transform in place
+     */
+    void transform(ByteBuffer bytes);
+
+    /**
+     * Whether the latin letters of the charset are single bytes
+     * equal to their ASCII code and no other byte decodes to
+     * one of them. A byte table that only maps ASCII letters is
+     * then exact, every other byte passes through unchanged.
+     * True for UTF-8, where multi byte sequences only use bytes
+     * of 0x80 and above, and for ASCII based single byte charsets.
+     * @param charset the charset of the data
+     * @return true if the data can be transformed byte by byte
+     */
+    static boolean isAsciiTransparent(Charset charset) {
+        if (StandardCharsets.UTF_8.equals(charset) || StandardCharsets.US_ASCII.equals(charset)
+                || StandardCharsets.ISO_8859_1.equals(charset)) {
+            return true;
+        }
+        if (!charset.canEncode() || charset.newEncoder().maxBytesPerChar() != 1) {
+            return false;
+        }
+        CharsetDecoder decoder = charset.newDecoder();
+        ByteBuffer single = ByteBuffer.allocate(1);
+        CharBuffer decoded = CharBuffer.allocate(2);
+        for (int b = 0; b < 256; b++) {
+            single.clear();
+            single.put((byte) b).flip();
+            decoded.clear();
+            decoder.reset();
+            CoderResult result = decoder.decode(single, decoded, true);
+            decoder.flush(decoded);
+            decoded.flip();
+            if (result.isError()) {
+                if (b < 128) {
+                    return false;
+                }
+                continue;
+            }
+            int ch = decoded.remaining() == 1 ? decoded.get(0) : -1;
+            if ((isAsciiLetter(ch) || isAsciiLetter(b)) && ch != b) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private static boolean isAsciiLetter(int ch) {
+        return (ch >= 'A' && ch <= 'Z') || (ch >= 'a' && ch <= 'z');
+    }
+
+    /**
+     * Builds a 256 entry substitution table out of a char transformer
+     * which changes nothing but ASCII chars and ignores positions
+     * @param transformer the transformer to tabulate
+     * @return a transformer doing a single lookup per byte
+     */
+    static ByteTransformer table(CharTransformer transformer) {
+        char[] ascii = new char[128];
+        for (int i = 0; i < ascii.length; i++) {
+            ascii[i] = (char) i;
+        }
+        transformer.transform(ascii, 0, ascii.length);
+        byte[] table = new byte[256];
+        for (int i = 0; i < table.length; i++) {
+            table[i] = i < ascii.length ? (byte) ascii[i] : (byte) i;
+        }
+        return bytes -> {
+            if (bytes.hasArray()) {
+                byte[] array = bytes.array();
+                int end = bytes.arrayOffset() + bytes.limit();
+                for (int i = bytes.arrayOffset() + bytes.position(); i < end; i++) {
+                    array[i] = table[array[i] & 0xff];
+                }
+            } else {
+                for (int i = bytes.position(); i < bytes.limit(); i++) {
+                    bytes.put(i, table[bytes.get(i) & 0xff]);
+                }
+            }
+        };
+    }
+}
@@ -0,0 +1,25 @@
+package encryptdecrypt;
+
+/**
+ * Stateful transformer returned by {@link EncryptionStrategy#stream},
+ * the chars are transformed in place so the data can be fed
+ * chunk by chunk with constant memory
+ */
+interface CharTransformer {
+    void transform(char[] chars, int offset, int length);
+
+    /**
+     * Sets the absolute position in the text of the next char
+     * passed in. Transformers whose output does not depend on
+     * the position ignore it.
+     * @param position the number of chars preceding the next one
+     */
+    default void seek(long position) {
+    }
+
+    default String transform(String text) {
+        char[] chars = text.toCharArray();
+        transform(chars, 0, chars.length);
+        return new String(chars);
+    }
+}
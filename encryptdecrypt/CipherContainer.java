@@ -0,0 +1,318 @@
+package encryptdecrypt;
+
+import java.io.*;
+import java.nio.ByteBuffer;
+import java.nio.CharBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.*;
+import java.util.zip.CRC32;
+
+/**
+ * Output format which stores the cipher text in chunks of a fixed
+ * number of chars followed by an index of the chunks, so any range
+ * of the text can be decrypted by reading only the chunks holding it.
+ * Offsets and lengths of the text are counted in UTF-16 chars, the
+ * same unit the strategies work in, which is what lets a position
+ * dependent cipher be started in the middle of the text.
+ * <p>
+ * Layout, all integers big endian:
+ * <pre>
+ * header  magic int, version int, chars per chunk int, charset name as in DataOutput.writeUTF
+ * chunks  the encoded cipher text of every chunk one after another
+ * index   per chunk: char offset long, byte offset long, byte length int, char count int, CRC32 int
+ * footer  index offset long, chunk count int, magic int
+ * </pre>
+ */
+class CipherContainer {
+    private static final int MAGIC;
+    private static final int VERSION;
+    static final int DEFAULT_CHUNK_CHARS;
+    private static final int INDEX_ENTRY_SIZE;
+    private static final int FOOTER_SIZE;
+    /**
+     * Enough for the fixed part of the header
+     * and the longest charset name
+     */
+    private static final int MAX_HEADER_SIZE;
+
+    static {
+        MAGIC = 0x45444343;
+        VERSION = 1;
+        DEFAULT_CHUNK_CHARS = 64 * 1024;
+        INDEX_ENTRY_SIZE = 2 * Long.BYTES + 3 * Integer.BYTES;
+        FOOTER_SIZE = Long.BYTES + 2 * Integer.BYTES;
+        MAX_HEADER_SIZE = 3 * Integer.BYTES + 2 + 1024;
+    }
+
+    /**
+     * One chunk as described by the index
+     */
+    private static class Entry {
+        final long charOffset;
+        final long byteOffset;
+        final int byteLength;
+        final int charCount;
+        final int checksum;
+
+        Entry(long charOffset, long byteOffset, int byteLength, int charCount, int checksum) {
+            this.charOffset = charOffset;
+            this.byteOffset = byteOffset;
+            this.byteLength = byteLength;
+            this.charCount = charCount;
+            this.checksum = checksum;
+        }
+    }
+
+    private final FileChannel channel;
+    private final JobMetrics metrics;
+    private final Charset charset;
+    private final int chunkChars;
+    private final long indexOffset;
+    private final int chunks;
+    private final ByteBuffer entryBuffer = ByteBuffer.allocate(INDEX_ENTRY_SIZE);
+    private long length;
+
+    private CipherContainer(FileChannel channel, JobMetrics metrics, Charset charset, int chunkChars,
+                            long indexOffset, int chunks) {
+        this.channel = channel;
+        this.metrics = metrics;
+        this.charset = charset;
+        this.chunkChars = chunkChars;
+        this.indexOffset = indexOffset;
+        this.chunks = chunks;
+    }
+
+    /**
+     * Encrypts everything the reader delivers into a container
+     * @param in the plain text
+     * @param transformer the encrypting transformer, positioned at 0
+     * @param charset the charset the chunks are encoded with
+     * @param chunkChars the number of chars per chunk
+     * @param out where the container is written, not closed
+     * @throws IOException if reading or writing fails
+     */
+    static void write(Reader in, CharTransformer transformer, Charset charset, int chunkChars, OutputStream out) throws IOException {
+        CharsetEncoder encoder = charset.newEncoder()
+                .onMalformedInput(CodingErrorAction.REPLACE)
+                .onUnmappableCharacter(CodingErrorAction.REPLACE);
+        DataOutputStream data = new DataOutputStream(out);
+        data.writeInt(MAGIC);
+        data.writeInt(VERSION);
+        data.writeInt(chunkChars);
+        data.writeUTF(charset.name());
+        long byteOffset = data.size();
+        long charOffset = 0;
+        int chunks = 0;
+        ByteArrayOutputStream indexBytes = new ByteArrayOutputStream();
+        DataOutputStream index = new DataOutputStream(indexBytes);
+        char[] chars = new char[chunkChars];
+        ByteBuffer bytes = ByteBuffer.allocate((int) Math.ceil(chunkChars * (double) encoder.maxBytesPerChar()));
+        CRC32 crc = new CRC32();
+        /* a high surrogate ending a chunk is moved to the next
+           one so that no chunk has to encode half a pair, it is
+           already transformed
+         */
+        int held = 0;
+        boolean endOfInput = false;
+        while (!endOfInput || held > 0) {
+            int count = held;
+            int read;
+            while (count < chunkChars && (read = in.read(chars, count, chunkChars - count)) != -1) {
+                count += read;
+            }
+            endOfInput = count < chunkChars;
+            transformer.transform(chars, held, count - held);
+            held = 0;
+            if (count == 0) {
+                break;
+            }
+            if (!endOfInput && count > 1 && Character.isHighSurrogate(chars[count - 1])) {
+                count -= 1;
+                held = 1;
+            }
+            bytes.clear();
+            encoder.reset();
+            encoder.encode(CharBuffer.wrap(chars, 0, count), bytes, true);
+            encoder.flush(bytes);
+            crc.reset();
+            crc.update(bytes.array(), 0, bytes.position());
+            data.write(bytes.array(), 0, bytes.position());
+            index.writeLong(charOffset);
+            index.writeLong(byteOffset);
+            index.writeInt(bytes.position());
+            index.writeInt(count);
+            index.writeInt((int) crc.getValue());
+            charOffset += count;
+            byteOffset += bytes.position();
+            chunks += 1;
+            if (held > 0) {
+                chars[0] = chars[count];
+            }
+        }
+        indexBytes.writeTo(data);
+        data.writeLong(byteOffset);
+        data.writeInt(chunks);
+        data.writeInt(MAGIC);
+        data.flush();
+    }
+
+    /**
+     * Reads the header and the footer of a container, the index
+     * is only read an entry at a time when a range is looked up
+     * @param channel the container file, only positioned reads are used
+     * @param metrics receives the bytes read
+     * @return the container
+     * @throws IOException if the file is not a valid container
+     */
+    static CipherContainer open(FileChannel channel, JobMetrics metrics) throws IOException {
+        long size = channel.size();
+        if (size < FOOTER_SIZE) {
+            throw new IOException("Not a cipher container");
+        }
+        ByteBuffer footer = readFully(channel, size - FOOTER_SIZE, FOOTER_SIZE, metrics);
+        long indexOffset = footer.getLong();
+        int chunks = footer.getInt();
+        if (footer.getInt() != MAGIC || chunks < 0 || indexOffset < 0
+                || indexOffset + (long) chunks * INDEX_ENTRY_SIZE != size - FOOTER_SIZE) {
+            throw new IOException("Not a cipher container");
+        }
+        DataInputStream header = new DataInputStream(new ByteArrayInputStream(
+                readFully(channel, 0, (int) Math.min(MAX_HEADER_SIZE, indexOffset), metrics).array()));
+        if (header.readInt() != MAGIC) {
+            throw new IOException("Not a cipher container");
+        }
+        int version = header.readInt();
+        if (version != VERSION) {
+            throw new IOException("Unsupported cipher container version " + version);
+        }
+        int chunkChars = header.readInt();
+        Charset charset;
+        try {
+            charset = Charset.forName(header.readUTF());
+        } catch (IllegalArgumentException e) {
+            throw new IOException("Unsupported charset in cipher container", e);
+        }
+        CipherContainer container = new CipherContainer(channel, metrics, charset, chunkChars, indexOffset, chunks);
+        if (chunks > 0) {
+            Entry last = container.entry(chunks - 1);
+            container.length = last.charOffset + last.charCount;
+        }
+        return container;
+    }
+
+    /**
+     * Reads one entry of the index
+     * @param i the number of the chunk
+     * @return the entry
+     * @throws IOException if the entry cannot be read or is not valid
+     */
+    private Entry entry(int i) throws IOException {
+        entryBuffer.clear();
+        readFully(channel, indexOffset + (long) i * INDEX_ENTRY_SIZE, entryBuffer, metrics);
+        Entry entry = new Entry(entryBuffer.getLong(), entryBuffer.getLong(), entryBuffer.getInt(),
+                entryBuffer.getInt(), entryBuffer.getInt());
+        if (entry.charOffset < 0 || entry.charCount < 0 || entry.charCount > chunkChars || entry.byteOffset < 0
+                || entry.byteLength < 0 || entry.byteOffset + entry.byteLength > indexOffset) {
+            throw new IOException("Corrupt cipher container index at chunk " + i);
+        }
+        return entry;
+    }
+
+    private static ByteBuffer readFully(FileChannel channel, long position, int length, JobMetrics metrics) throws IOException {
+        ByteBuffer buffer = ByteBuffer.allocate(length);
+        readFully(channel, position, buffer, metrics);
+        return buffer;
+    }
+
+    private static void readFully(FileChannel channel, long position, ByteBuffer buffer, JobMetrics metrics) throws IOException {
+        long readStart = System.nanoTime();
+        while (buffer.hasRemaining()) {
+            if (channel.read(buffer, position + buffer.position()) == -1) {
+                throw new EOFException("Cipher container is truncated");
+            }
+        }
+        metrics.bytesRead(buffer.position(), System.nanoTime() - readStart);
+        buffer.flip();
+    }
+
+    /**
+     * @return the number of chars in the container
+     */
+    long length() {
+        return length;
+    }
+
+    /**
+     * Decrypts a range of the text reading only the chunks it spans
+     * and the index entries needed to find them
+     * @param start the first char of the range
+     * @param length the number of chars, the range is cut at the end of the text
+     * @param transformer the decrypting transformer
+     * @param out where the plain text is written
+     * @throws IOException if reading fails or a chunk fails its checksum
+     */
+    void read(long start, long length, CharTransformer transformer, Writer out) throws IOException {
+        long end = length > Long.MAX_VALUE - start ? Long.MAX_VALUE : start + length;
+        end = Math.min(end, length());
+        if (start >= end) {
+            out.flush();
+            return;
+        }
+        CharsetDecoder decoder = charset.newDecoder()
+                .onMalformedInput(CodingErrorAction.REPLACE)
+                .onUnmappableCharacter(CodingErrorAction.REPLACE);
+        ByteBuffer bytes = null;
+        CharBuffer chars = CharBuffer.allocate(chunkChars);
+        CRC32 crc = new CRC32();
+        for (int i = findChunk(start); i < chunks; i++) {
+            Entry entry = entry(i);
+            if (entry.charOffset >= end) {
+                break;
+            }
+            if (bytes == null || bytes.capacity() < entry.byteLength) {
+                bytes = ByteBuffer.allocate(entry.byteLength);
+            }
+            bytes.clear().limit(entry.byteLength);
+            readFully(channel, entry.byteOffset, bytes, metrics);
+            crc.reset();
+            crc.update(bytes.array(), 0, bytes.limit());
+            if ((int) crc.getValue() != entry.checksum) {
+                throw new IOException("Checksum mismatch in cipher container chunk " + i);
+            }
+            chars.clear();
+            decoder.reset();
+            decoder.decode(bytes, chars, true);
+            decoder.flush(chars);
+            if (chars.position() != entry.charCount) {
+                throw new IOException("Char count mismatch in cipher container chunk " + i);
+            }
+            int from = (int) Math.max(0, start - entry.charOffset);
+            int to = (int) Math.min(entry.charCount, end - entry.charOffset);
+            transformer.seek(entry.charOffset + from);
+            transformer.transform(chars.array(), from, to - from);
+            out.write(chars.array(), from, to - from);
+        }
+        out.flush();
+    }
+
+    /**
+     * Binary search over the index reading only the entries it visits
+     * @return the index of the chunk holding the char at the
+     * given position or of the first chunk if there is none
+     */
+    private int findChunk(long position) throws IOException {
+        int low = 0;
+        int high = chunks - 1;
+        int found = 0;
+        while (low <= high) {
+            int mid = (low + high) >>> 1;
+            if (entry(mid).charOffset <= position) {
+                found = mid;
+                low = mid + 1;
+            } else {
+                high = mid - 1;
+            }
+        }
+        return found;
+    }
+}
@@ -0,0 +1,313 @@
+package encryptdecrypt;
+
+import java.io.*;
+import java.nio.ByteBuffer;
+import java.nio.CharBuffer;
+import java.nio.channels.Channels;
+import java.nio.channels.ReadableByteChannel;
+import java.nio.channels.WritableByteChannel;
+import java.nio.charset.*;
+
+/**
+ * Adapters which pass data through a {@link CharTransformer}
+ * incrementally, each of them holds a fixed size buffer
+ * regardless of how much data goes through it.
+ * The byte based adapters use the given charset to get from
+ * bytes to chars and back, malformed input is replaced.
+ */
+class CipherStreams {
+    static final int BUFFER_SIZE;
+
+    static {
+        BUFFER_SIZE = 8192;
+    }
+
+    /*
+        Hidden Constructor
+     */
+    private CipherStreams() {
+    }
+
+    static Reader reader(Reader in, CharTransformer transformer) {
+        return new TransformingReader(in, transformer);
+    }
+
+    static Writer writer(Writer out, CharTransformer transformer) {
+        return new TransformingWriter(out, transformer);
+    }
+
+    static InputStream inputStream(InputStream in, CharTransformer transformer, Charset charset) {
+        return new TransformingInputStream(in, transformer, charset);
+    }
+
+    static OutputStream outputStream(OutputStream out, CharTransformer transformer, Charset charset) {
+        return new TransformingOutputStream(out, transformer, charset);
+    }
+
+    static ReadableByteChannel readableChannel(ReadableByteChannel in, CharTransformer transformer, Charset charset) {
+        return Channels.newChannel(inputStream(Channels.newInputStream(in), transformer, charset));
+    }
+
+    static WritableByteChannel writableChannel(WritableByteChannel out, CharTransformer transformer, Charset charset) {
+        return Channels.newChannel(outputStream(Channels.newOutputStream(out), transformer, charset));
+    }
+}
+
+class TransformingReader extends FilterReader {
+    private final CharTransformer transformer;
+
+    TransformingReader(Reader in, CharTransformer transformer) {
+        super(in);
+        this.transformer = transformer;
+    }
+
+    @Override
+    public int read() throws IOException {
+        char[] single = new char[1];
+        return read(single, 0, 1) == -1 ? -1 : single[0];
+    }
+
+    @Override
+    public int read(char[] cbuf, int off, int len) throws IOException {
+        int n = in.read(cbuf, off, len);
+        if (n > 0) {
+            transformer.transform(cbuf, off, n);
+        }
+        return n;
+    }
+
+    /**
+     * Skipped chars still go through the transformer
+     * so that a stateful transformer stays in step
+     */
+    @Override
+    public long skip(long n) throws IOException {
+        char[] skipped = new char[(int) Math.min(n, CipherStreams.BUFFER_SIZE)];
+        long remaining = n;
+        int read;
+        while (remaining > 0 && (read = read(skipped, 0, (int) Math.min(remaining, skipped.length))) != -1) {
+            remaining -= read;
+        }
+        return n - remaining;
+    }
+
+    @Override
+    public boolean markSupported() {
+        return false;
+    }
+
+    @Override
+    public void mark(int readAheadLimit) throws IOException {
+        throw new IOException("mark() not supported");
+    }
+
+    @Override
+    public void reset() throws IOException {
+        throw new IOException("reset() not supported");
+    }
+}
+
+class TransformingWriter extends FilterWriter {
+    private final CharTransformer transformer;
+    /**
+     * The caller's chars are never modified,
+     * they are copied here before transforming
+     */
+    private final char[] buffer = new char[CipherStreams.BUFFER_SIZE];
+
+    TransformingWriter(Writer out, CharTransformer transformer) {
+        super(out);
+        this.transformer = transformer;
+    }
+
+    @Override
+    public void write(int c) throws IOException {
+        buffer[0] = (char) c;
+        transformer.transform(buffer, 0, 1);
+        out.write(buffer, 0, 1);
+    }
+
+    @Override
+    public void write(char[] cbuf, int off, int len) throws IOException {
+        while (len > 0) {
+            int n = Math.min(len, buffer.length);
+            System.arraycopy(cbuf, off, buffer, 0, n);
+            transformer.transform(buffer, 0, n);
+            out.write(buffer, 0, n);
+            off += n;
+            len -= n;
+        }
+    }
+
+    @Override
+    public void write(String str, int off, int len) throws IOException {
+        while (len > 0) {
+            int n = Math.min(len, buffer.length);
+            str.getChars(off, off + n, buffer, 0);
+            transformer.transform(buffer, 0, n);
+            out.write(buffer, 0, n);
+            off += n;
+            len -= n;
+        }
+    }
+}
+
+class TransformingInputStream extends InputStream {
+    private final Reader reader;
+    private final CharsetEncoder encoder;
+    private final CharBuffer chars = CharBuffer.allocate(CipherStreams.BUFFER_SIZE);
+    private final ByteBuffer bytes = ByteBuffer.allocate(CipherStreams.BUFFER_SIZE);
+    private boolean endOfInput;
+    private boolean flushed;
+
+    TransformingInputStream(InputStream in, CharTransformer transformer, Charset charset) {
+        reader = new TransformingReader(new InputStreamReader(in, charset), transformer);
+        encoder = charset.newEncoder()
+                .onMalformedInput(CodingErrorAction.REPLACE)
+                .onUnmappableCharacter(CodingErrorAction.REPLACE);
+        chars.flip();
+        bytes.flip();
+    }
+
+    /**
+     * Encodes the next batch of transformed chars
+     * @return false if there is nothing left
+     */
+    private boolean fill() throws IOException {
+        bytes.clear();
+        while (bytes.position() == 0 && !flushed) {
+            if (!endOfInput) {
+                chars.compact();
+                int n = reader.read(chars);
+                chars.flip();
+                endOfInput = n == -1;
+            }
+            if (encoder.encode(chars, bytes, endOfInput).isOverflow()) {
+                break;
+            }
+            if (endOfInput) {
+                if (encoder.flush(bytes).isOverflow()) {
+                    break;
+                }
+                flushed = true;
+            }
+        }
+        bytes.flip();
+        return bytes.hasRemaining();
+    }
+
+    @Override
+    public int read() throws IOException {
+        if (!bytes.hasRemaining() && !fill()) {
+            return -1;
+        }
+        return bytes.get() & 0xff;
+    }
+
+    @Override
+    public int read(byte[] b, int off, int len) throws IOException {
+        if (len == 0) {
+            return 0;
+        }
+        if (!bytes.hasRemaining() && !fill()) {
+            return -1;
+        }
+        int n = Math.min(len, bytes.remaining());
+        bytes.get(b, off, n);
+        return n;
+    }
+
+    @Override
+    public int available() {
+        return bytes.remaining();
+    }
+
+    @Override
+    public void close() throws IOException {
+        reader.close();
+    }
+}
+
+class TransformingOutputStream extends OutputStream {
+    private final Writer writer;
+    private final CharTransformer transformer;
+    private final CharsetDecoder decoder;
+    private final ByteBuffer bytes = ByteBuffer.allocate(CipherStreams.BUFFER_SIZE);
+    private final CharBuffer chars = CharBuffer.allocate(CipherStreams.BUFFER_SIZE);
+    private boolean closed;
+
+    TransformingOutputStream(OutputStream out, CharTransformer transformer, Charset charset) {
+        writer = new OutputStreamWriter(out, charset);
+        this.transformer = transformer;
+        decoder = charset.newDecoder()
+                .onMalformedInput(CodingErrorAction.REPLACE)
+                .onUnmappableCharacter(CodingErrorAction.REPLACE);
+    }
+
+    @Override
+    public void write(int b) throws IOException {
+        bytes.put((byte) b);
+        if (!bytes.hasRemaining()) {
+            drain(false);
+        }
+    }
+
+    @Override
+    public void write(byte[] b, int off, int len) throws IOException {
+        while (len > 0) {
+            int n = Math.min(len, bytes.remaining());
+            bytes.put(b, off, n);
+            off += n;
+            len -= n;
+            drain(false);
+        }
+    }
+
+    /**
+     * Decodes whatever complete chars are buffered and writes
+     * them out, a trailing incomplete sequence is kept for later
+     * unless this is the end of input
+     */
+    private void drain(boolean endOfInput) throws IOException {
+        bytes.flip();
+        CoderResult result;
+        do {
+            result = decoder.decode(bytes, chars, endOfInput);
+            writeChars();
+        } while (result.isOverflow());
+        if (endOfInput) {
+            while (decoder.flush(chars).isOverflow()) {
+                writeChars();
+            }
+            writeChars();
+        }
+        bytes.compact();
+    }
+
+    private void writeChars() throws IOException {
+        chars.flip();
+        transformer.transform(chars.array(), 0, chars.limit());
+        writer.write(chars.array(), 0, chars.limit());
+        chars.clear();
+    }
+
+    /**
+     * A multi byte sequence which is not yet complete
+     * stays buffered until more bytes arrive
+     */
+    @Override
+    public void flush() throws IOException {
+        drain(false);
+        writer.flush();
+    }
+
+    @Override
+    public void close() throws IOException {
+        if (closed) {
+            return;
+        }
+        closed = true;
+        drain(true);
+        writer.close();
+    }
+}
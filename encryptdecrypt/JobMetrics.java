@@ -0,0 +1,34 @@
+package encryptdecrypt;
+
+/**
+ * Receives what a file job does as it happens. Every call
+ * reports the amount of data handled by one operation and
+ * the time the operation took. Implementations must be
+ * thread safe since the pipelined mode reports from
+ * several threads at once.
+ */
+interface JobMetrics {
+    JobMetrics NONE = new JobMetrics() {
+        @Override
+        public void bytesRead(long count, long nanos) {
+        }
+
+        @Override
+        public void charsTransformed(long count, long nanos) {
+        }
+
+        @Override
+        public void bytesWritten(long count, long nanos) {
+        }
+    };
+
+    void bytesRead(long count, long nanos);
+
+    /**
+     * In byte mode the count is the number of bytes
+     * transformed without decoding them
+     */
+    void charsTransformed(long count, long nanos);
+
+    void bytesWritten(long count, long nanos);
+}
@@ -0,0 +1,197 @@
+package encryptdecrypt;
+
+import jdk.jfr.*;
+
+import java.util.Locale;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Collects the counters and stage timings of a file job,
+ * publishes them as JFR events and renders them as a
+ * progress line or a JSON summary.
+ */
+class JobStats implements JobMetrics {
+    private static final double NANOS_PER_SECOND;
+    private static final double BYTES_PER_MEGABYTE;
+
+    static {
+        NANOS_PER_SECOND = 1e9;
+        BYTES_PER_MEGABYTE = 1e6;
+    }
+
+    @Name("encryptdecrypt.Transfer")
+    @Label("Transfer")
+    @Category("Encrypt Decrypt")
+    @Description("One read, transform or write operation of a file job, "
+            + "disabled by default as a large job commits millions of them")
+    @StackTrace(false)
+    @Enabled(false)
+    static class TransferEvent extends Event {
+        @Label("Stage")
+        String stage;
+        @Label("Amount")
+        @Description("Bytes for read and write, chars for transform")
+        long amount;
+        @Label("Duration")
+        @Timespan(Timespan.NANOSECONDS)
+        long nanos;
+    }
+
+    @Name("encryptdecrypt.Job")
+    @Label("Job")
+    @Category("Encrypt Decrypt")
+    @Description("Totals of a finished file job")
+    @StackTrace(false)
+    static class JobEvent extends Event {
+        @Label("Mode")
+        String mode;
+        @Label("Algorithm")
+        String algorithm;
+        @Label("Bytes Read")
+        @DataAmount
+        long bytesRead;
+        @Label("Chars Transformed")
+        long charsTransformed;
+        @Label("Bytes Written")
+        @DataAmount
+        long bytesWritten;
+        @Label("Succeeded")
+        boolean succeeded;
+    }
+
+    /**
+     * Only asked whether transfer events are enabled,
+     * so nothing is allocated per call when they are not
+     */
+    private static final TransferEvent TRANSFER_PROBE = new TransferEvent();
+
+    private final String mode;
+    private final String algorithm;
+    private final long startNanos;
+    private final JobEvent jobEvent = new JobEvent();
+    private final LongAdder bytesRead = new LongAdder();
+    private final LongAdder readNanos = new LongAdder();
+    private final LongAdder charsTransformed = new LongAdder();
+    private final LongAdder transformNanos = new LongAdder();
+    private final LongAdder bytesWritten = new LongAdder();
+    private final LongAdder writeNanos = new LongAdder();
+    private volatile long endNanos;
+    private volatile String error;
+
+    JobStats(String mode, String algorithm) {
+        this.mode = mode;
+        this.algorithm = algorithm;
+        jobEvent.begin();
+        startNanos = System.nanoTime();
+    }
+
+    @Override
+    public void bytesRead(long count, long nanos) {
+        bytesRead.add(count);
+        readNanos.add(nanos);
+        transfer("read", count, nanos);
+    }
+
+    @Override
+    public void charsTransformed(long count, long nanos) {
+        charsTransformed.add(count);
+        transformNanos.add(nanos);
+        transfer("transform", count, nanos);
+    }
+
+    @Override
+    public void bytesWritten(long count, long nanos) {
+        bytesWritten.add(count);
+        writeNanos.add(nanos);
+        transfer("write", count, nanos);
+    }
+
+    private static void transfer(String stage, long amount, long nanos) {
+        if (!TRANSFER_PROBE.isEnabled()) {
+            return;
+        }
+        TransferEvent event = new TransferEvent();
+        event.stage = stage;
+        event.amount = amount;
+        event.nanos = nanos;
+        event.commit();
+    }
+
+    /**
+     * Marks the job as finished
+     * @param error the reason of the failure or null on success
+     */
+    void finish(String error) {
+        this.error = error;
+        endNanos = System.nanoTime();
+        jobEvent.end();
+        if (jobEvent.shouldCommit()) {
+            jobEvent.mode = mode;
+            jobEvent.algorithm = algorithm;
+            jobEvent.bytesRead = bytesRead.sum();
+            jobEvent.charsTransformed = charsTransformed.sum();
+            jobEvent.bytesWritten = bytesWritten.sum();
+            jobEvent.succeeded = error == null;
+            jobEvent.commit();
+        }
+    }
+
+    private double elapsedSeconds() {
+        long end = endNanos == 0 ? System.nanoTime() : endNanos;
+        return (end - startNanos) / NANOS_PER_SECOND;
+    }
+
+    private static double megabytesPerSecond(long bytes, double seconds) {
+        return seconds > 0 ? bytes / BYTES_PER_MEGABYTE / seconds : 0;
+    }
+
+    String progressLine() {
+        double elapsed = elapsedSeconds();
+        long read = bytesRead.sum();
+        long written = bytesWritten.sum();
+        return String.format(Locale.ROOT, "%.1fs read %d B (%.2f MB/s) written %d B (%.2f MB/s)",
+                elapsed, read, megabytesPerSecond(read, elapsed), written, megabytesPerSecond(written, elapsed));
+    }
+
+    String toJson() {
+        double elapsed = elapsedSeconds();
+        long read = bytesRead.sum();
+        long written = bytesWritten.sum();
+        String failure = error;
+        StringBuilder sb = new StringBuilder();
+        sb.append('{');
+        sb.append("\"mode\":").append(quote(mode));
+        sb.append(",\"algorithm\":").append(quote(algorithm));
+        sb.append(",\"status\":").append(quote(failure == null ? "ok" : "error"));
+        if (failure != null) {
+            sb.append(",\"error\":").append(quote(failure));
+        }
+        sb.append(",\"bytesRead\":").append(read);
+        sb.append(",\"charsTransformed\":").append(charsTransformed.sum());
+        sb.append(",\"bytesWritten\":").append(written);
+        sb.append(String.format(Locale.ROOT, ",\"readSeconds\":%.6f", readNanos.sum() / NANOS_PER_SECOND));
+        sb.append(String.format(Locale.ROOT, ",\"transformSeconds\":%.6f", transformNanos.sum() / NANOS_PER_SECOND));
+        sb.append(String.format(Locale.ROOT, ",\"writeSeconds\":%.6f", writeNanos.sum() / NANOS_PER_SECOND));
+        sb.append(String.format(Locale.ROOT, ",\"elapsedSeconds\":%.6f", elapsed));
+        sb.append(String.format(Locale.ROOT, ",\"readMBps\":%.3f", megabytesPerSecond(read, elapsed)));
+        sb.append(String.format(Locale.ROOT, ",\"writeMBps\":%.3f", megabytesPerSecond(written, elapsed)));
+        sb.append('}');
+        return sb.toString();
+    }
+
+    private static String quote(String value) {
+        StringBuilder sb = new StringBuilder(value.length() + 2);
+        sb.append('"');
+        for (int i = 0; i < value.length(); i++) {
+            char ch = value.charAt(i);
+            if (ch == '"' || ch == '\\') {
+                sb.append('\\').append(ch);
+            } else if (ch < ' ') {
+                sb.append(String.format("\\u%04x", (int) ch));
+            } else {
+                sb.append(ch);
+            }
+        }
+        return sb.append('"').toString();
+    }
+}
@@ -1,10 +1,30 @@
 package encryptdecrypt;
 
 import java.io.*;
+import java.nio.ByteBuffer;
+import java.nio.charset.Charset;
 
 interface EncryptionStrategy {
     String encrypt(String plainText, int key);
     String decrypt(String cipherText, int key);
+
+    /**
+     * @param key the key to use
+     * @param mode "enc" or "dec"
+     * @return a transformer which encrypts or decrypts whatever is passed to it
+     */
+    CharTransformer stream(int key, String mode);
+
+    /**
+     * @param key the key to use
+     * @param mode "enc" or "dec"
+     * @param charset the charset of the data
+     * @return a transformer working on the encoded bytes directly
+     * or null if the data has to be decoded for this strategy
+     */
+    default ByteTransformer byteStream(int key, String mode, Charset charset) {
+        return null;
+    }
 }
 
 class UnicodeEncryption implements EncryptionStrategy  {
@@ -18,26 +38,26 @@ class UnicodeEncryption implements EncryptionStrategy  {
 
     @Override
     public String encrypt(String plainText, int key) {
-        key %= UNICODE_LENGTH;
-        StringBuilder sb = new StringBuilder();
-        for (int i = 0; i < plainText.length(); i++) {
-            int numForChar = plainText.charAt(i);
-            numForChar = (numForChar + key) % UNICODE_LENGTH;
-            sb.append((char) numForChar);
-        }
-        return sb.toString();
+        return stream(key, "enc").transform(plainText);
     }
 
     @Override
     public String decrypt(String cipherText, int key) {
-        key %= UNICODE_LENGTH;
-        StringBuilder sb = new StringBuilder();
-        for (int i = 0; i < cipherText.length(); i++) {
-            int numForChar = cipherText.charAt(i);
-            numForChar = (numForChar - key) % UNICODE_LENGTH;
-            sb.append((char) numForChar);
+        return stream(key, "dec").transform(cipherText);
+    }
+
+    @Override
+    public CharTransformer stream(int key, String mode) {
+        key = Math.floorMod(key, UNICODE_LENGTH);
+        if ("dec".equals(mode)) {
+            key = UNICODE_LENGTH - key;
         }
-        return sb.toString();
+        final int shift = key;
+        return (chars, offset, length) -> {
+            for (int i = offset; i < offset + length; i++) {
+                chars[i] = (char) (chars[i] + shift);
+            }
+        };
     }
 }
 
@@ -59,41 +79,185 @@ class AlphabetEncryption implements EncryptionStrategy {
 
     @Override
     public String encrypt(String plainText, int key) {
-        key %= ALPHABET_SIZE;
-        StringBuilder sb = new StringBuilder();
-        for (int i = 0; i < plainText.length(); i++) {
-            int ch = plainText.charAt(i);
-            if (ch >= UPPERCASE_A && ch <= UPPERCASE_Z) {
-                ch = UPPERCASE_A + (ch - UPPERCASE_A + key) % ALPHABET_SIZE;
-            } else if (ch >= LOWERCASE_A && ch <= LOWERCASE_Z){
-                ch = LOWERCASE_A + (ch - LOWERCASE_A + key) % ALPHABET_SIZE;
+        return stream(key, "enc").transform(plainText);
+    }
+
+    @Override
+    public String decrypt(String cipherText, int key) {
+        return stream(key, "dec").transform(cipherText);
+    }
+
+    @Override
+    public CharTransformer stream(int key, String mode) {
+        key = Math.floorMod(key, ALPHABET_SIZE);
+        if ("dec".equals(mode)) {
+            key = (ALPHABET_SIZE - key) % ALPHABET_SIZE;
+        }
+        final int shift = key;
+        return (chars, offset, length) -> {
+            for (int i = offset; i < offset + length; i++) {
+                int ch = chars[i];
+                if (ch >= UPPERCASE_A && ch <= UPPERCASE_Z) {
+                    chars[i] = (char) (UPPERCASE_A + (ch - UPPERCASE_A + shift) % ALPHABET_SIZE);
+                } else if (ch >= LOWERCASE_A && ch <= LOWERCASE_Z) {
+                    chars[i] = (char) (LOWERCASE_A + (ch - LOWERCASE_A + shift) % ALPHABET_SIZE);
+                }
+            }
+        };
+    }
+
+    /**
+     * Only ASCII letters are changed, so for charsets where those
+     * are plain single bytes a 256 entry table does the whole job
+     */
+    @Override
+    public ByteTransformer byteStream(int key, String mode, Charset charset) {
+        if (!ByteTransformer.isAsciiTransparent(charset)) {
+            return null;
+        }
+        return ByteTransformer.table(stream(key, mode));
+    }
+}
+
+/**
+ * Polyalphabetic shift of the latin letters driven by a keyword.
+ * Unlike the classic Vigenere cipher the keyword advances on every
+ * char, not only on letters, so the shift of a char depends only on
+ * its absolute position. That keeps any region of the text
+ * independent of what precedes it, which is what the streaming,
+ * pipelined and chunked paths need.
+ * The int key of {@link EncryptionStrategy} is added to every shift.
+ */
+class VigenereEncryption implements EncryptionStrategy {
+    private static final int ALPHABET_SIZE;
+    /**
+     * Chars below this are substituted through the table,
+     * the rest are passed through unchanged
+     */
+    private static final int TABLE_WIDTH;
+
+    static {
+        ALPHABET_SIZE = 26;
+        TABLE_WIDTH = 128;
+    }
+
+    private final int[] shifts;
+
+    VigenereEncryption(String keyword) {
+        if (keyword == null || keyword.isEmpty()) {
+            throw new IllegalArgumentException("Keyword must not be empty");
+        }
+        shifts = new int[keyword.length()];
+        for (int i = 0; i < keyword.length(); i++) {
+            char ch = keyword.charAt(i);
+            if (ch >= 'A' && ch <= 'Z') {
+                shifts[i] = ch - 'A';
+            } else if (ch >= 'a' && ch <= 'z') {
+                shifts[i] = ch - 'a';
+            } else {
+                throw new IllegalArgumentException(String.format("Keyword must contain only latin letters found %c", ch));
             }
-            sb.append((char) ch);
         }
-        return sb.toString();
+    }
+
+    @Override
+    public String encrypt(String plainText, int key) {
+        return stream(key, "enc").transform(plainText);
     }
 
     @Override
     public String decrypt(String cipherText, int key) {
-        key %= ALPHABET_SIZE;
-        StringBuilder sb = new StringBuilder();
-        for (int i = 0; i < cipherText.length(); i++) {
-            int ch = cipherText.charAt(i);
-            if (ch >= UPPERCASE_A && ch <= UPPERCASE_Z) {
-                ch = UPPERCASE_A + (ALPHABET_SIZE + ch - UPPERCASE_A - key) % ALPHABET_SIZE;
-            } else if (ch >= LOWERCASE_A && ch <= LOWERCASE_Z){
-                ch = LOWERCASE_A + (ALPHABET_SIZE + ch - LOWERCASE_A - key) % ALPHABET_SIZE;
+        return stream(key, "dec").transform(cipherText);
+    }
+
+    @Override
+    public Schedule stream(int key, String mode) {
+        return new Schedule(shifts, key, "dec".equals(mode));
+    }
+
+    /**
+     * The substitution tables of every keyword position computed
+     * once, the kernels only do a table lookup per char and never
+     * allocate. An instance is immutable apart from its position so
+     * {@link #transform(char[], int, int, long)} can be called from
+     * several threads on different regions at once.
+     */
+    static class Schedule implements CharTransformer {
+        private final int period;
+        /**
+         * period rows of TABLE_WIDTH chars, row p maps
+         * a char at a position congruent to p
+         */
+        private final char[] table;
+        private long position;
+
+        Schedule(int[] shifts, int key, boolean decrypt) {
+            period = shifts.length;
+            table = new char[period * TABLE_WIDTH];
+            for (int p = 0; p < period; p++) {
+                int shift = Math.floorMod(shifts[p] + key, ALPHABET_SIZE);
+                if (decrypt) {
+                    shift = (ALPHABET_SIZE - shift) % ALPHABET_SIZE;
+                }
+                int row = p * TABLE_WIDTH;
+                for (int ch = 0; ch < TABLE_WIDTH; ch++) {
+                    int mapped = ch;
+                    if (ch >= 'A' && ch <= 'Z') {
+                        mapped = 'A' + (ch - 'A' + shift) % ALPHABET_SIZE;
+                    } else if (ch >= 'a' && ch <= 'z') {
+                        mapped = 'a' + (ch - 'a' + shift) % ALPHABET_SIZE;
+                    }
+                    table[row + ch] = (char) mapped;
+                }
+            }
+        }
+
+        /**
+         * Transforms the chars assuming the first of them
+         * is at the given absolute position of the text
+         * @param chars the chars to transform in place
+         * @param offset the first char to transform
+         * @param length the number of chars to transform
+         * @param position the position of chars[offset] in the text
+         */
+        void transform(char[] chars, int offset, int length, long position) {
+            int p = (int) (position % period);
+            int end = offset + length;
+            for (int i = offset; i < end; i++) {
+                char ch = chars[i];
+                if (ch < TABLE_WIDTH) {
+                    chars[i] = table[p * TABLE_WIDTH + ch];
+                }
+                if (++p == period) {
+                    p = 0;
+                }
             }
-            sb.append((char) ch);
         }
-        return sb.toString();
+
+        @Override
+        public void transform(char[] chars, int offset, int length) {
+            transform(chars, offset, length, position);
+            position += length;
+        }
+
+        @Override
+        public void seek(long position) {
+            this.position = position;
+        }
     }
 }
 
 public class Main {
+    private static final int MAX_MEMORY_READ_CHARS;
     private static final int MAX_MEMORY_READ_BYTES;
+    /**
+     * Path given to -in or -out to use stdin or stdout
+     */
+    private static final String STANDARD_STREAM;
     static {
-        MAX_MEMORY_READ_BYTES = 512;
+        MAX_MEMORY_READ_CHARS = 512;
+        MAX_MEMORY_READ_BYTES = 64 * 1024;
+        STANDARD_STREAM = "-";
     }
     private static String parseMode(String arg) {
         if("dec".equals(arg)) {
@@ -119,19 +283,27 @@ public class Main {
         }
         return key;
     }
-    private static FileInputStream parseInputFile(String path) {
+    private static InputStream parseInputFile(String path) {
+        if (STANDARD_STREAM.equals(path)) {
+            return System.in;
+        }
         try {
             File file = new File(path);
             if (file.exists() && file.canRead()) {
                 return new FileInputStream(file);
             } else{
+                System.err.println("error: cannot read " + path);
                 return null;
             }
         } catch (NullPointerException | FileNotFoundException e) {
+            System.err.println("error: cannot read " + path);
             return null;
         }
     }
     private static PrintStream parseOutputFile(String path) {
+        if (STANDARD_STREAM.equals(path)) {
+            return System.out;
+        }
         try {
             File file = new File(path);
             PrintStream ps = null;
@@ -142,13 +314,34 @@ public class Main {
             } else if (file.canWrite()) {
                 ps = new PrintStream(file);
             }
+            if (ps == null) {
+                System.err.println("warning: cannot write to " + path + ", writing to stdout instead");
+                return System.out;
+            }
             return ps;
         } catch (NullPointerException | IOException | SecurityException e) {
+            System.err.println("warning: cannot write to " + path + ", writing to stdout instead");
             return System.out;
         }
     }
+    /**
+     * Opens the output of a file job as a plain stream so that
+     * write errors reach the job instead of being swallowed
+     * the way a {@link PrintStream} does
+     */
+    private static FileOutputStream openOutputFile(String path) {
+        if (STANDARD_STREAM.equals(path)) {
+            return new FileOutputStream(FileDescriptor.out);
+        }
+        try {
+            return new FileOutputStream(path);
+        } catch (FileNotFoundException | SecurityException e) {
+            System.err.println("warning: cannot write to " + path + ", writing to stdout instead");
+            return new FileOutputStream(FileDescriptor.out);
+        }
+    }
     private static void manageCMDInput(String _mode, int _key, String _data, PrintStream _out, EncryptionStrategy _alg) {
-        if (_key == 0 || "".equals(_data)) {
+        if ("".equals(_data)) {
             _out.print(_data);
             return;
         }
@@ -158,39 +351,148 @@ public class Main {
             _out.print(_alg.decrypt(_data, _key));
         }
     }
-    private static void manageFileInput(String _mode, int _key, FileInputStream _in, PrintStream _out, EncryptionStrategy _alg){
+    private static boolean parsePipeline(String arg) {
+        return "on".equals(arg);
+    }
+    private static long parseProgress(String arg) {
+        try {
+            return (long) (Double.parseDouble(arg) * 1000);
+        } catch (NumberFormatException | NullPointerException e) {
+            return 0;
+        }
+    }
+    private static boolean parseByteMode(String arg) {
+        return !"off".equals(arg);
+    }
+    private static boolean parseContainer(String arg) {
+        return "on".equals(arg);
+    }
+    /**
+     * @param arg the range as start:length in chars
+     * @return start and length
+     * @throws NumberFormatException if the range is not valid
+     */
+    private static long[] parseRange(String arg) {
+        int colon = arg == null ? -1 : arg.indexOf(':');
+        if (colon == -1) {
+            throw new NumberFormatException("Range must be given as start:length");
+        }
+        long start = Long.parseLong(arg.substring(0, colon));
+        long length = Long.parseLong(arg.substring(colon + 1));
+        if (start < 0 || length < 0) {
+            throw new NumberFormatException("Range start and length must not be negative");
+        }
+        return new long[]{start, length};
+    }
+    private static void manageContainerOutput(CharTransformer _transformer, InputStream _in, OutputStream _out) throws IOException {
+        Charset charset = Charset.defaultCharset();
+        CipherContainer.write(new InputStreamReader(_in, charset), _transformer, charset, CipherContainer.DEFAULT_CHUNK_CHARS, _out);
+        _out.flush();
+    }
+    private static void manageContainerInput(CharTransformer _transformer, InputStream _in, OutputStream _out,
+                                             long[] _range, JobMetrics _metrics) throws IOException {
+        if (!(_in instanceof FileInputStream)) {
+            throw new IOException("A cipher container can only be read from a file");
+        }
+        CipherContainer container = CipherContainer.open(((FileInputStream) _in).getChannel(), _metrics);
+        long start = _range == null ? 0 : _range[0];
+        long length = _range == null ? container.length() : _range[1];
+        container.read(start, length, _transformer, new OutputStreamWriter(_out));
+    }
+    private static void managePipelinedInput(CharTransformer _transformer, InputStream _in, OutputStream _out) throws IOException {
+        new PipelineProcessor(_transformer, Charset.defaultCharset()).process(_in, _out);
+    }
+    private static void managePipelinedInput(ByteTransformer _transformer, InputStream _in, OutputStream _out) throws IOException {
+        new PipelineProcessor(_transformer).process(_in, _out);
+    }
+    private static void manageByteInput(ByteTransformer _transformer, InputStream _in, OutputStream _out) throws IOException {
         byte[] buffer = new byte[MAX_MEMORY_READ_BYTES];
+        ByteBuffer wrapped = ByteBuffer.wrap(buffer);
         int readLength;
-        if ("enc".equals(_mode)) {
-            try {
-                while ((readLength = _in.read(buffer)) != -1) {
-                    if (readLength < MAX_MEMORY_READ_BYTES) {
-                        byte[] newBuffer = new byte[readLength];
-                        System.arraycopy(buffer, 0, newBuffer, 0 ,readLength);
-                        buffer = newBuffer;
-                    }
-                    _out.print(_alg.encrypt(new String(buffer), _key));
-                }
-            } catch (IOException e) {
-                System.out.println(e.getMessage());
+        while ((readLength = _in.read(buffer)) != -1) {
+            wrapped.clear().limit(readLength);
+            _transformer.transform(wrapped);
+            _out.write(buffer, 0, readLength);
+        }
+        _out.flush();
+    }
+    private static void manageFileInput(CharTransformer _transformer, InputStream _in, OutputStream _out) throws IOException {
+        char[] buffer = new char[MAX_MEMORY_READ_CHARS];
+        int readLength;
+        Reader reader = CipherStreams.reader(new InputStreamReader(_in), _transformer);
+        Writer writer = new OutputStreamWriter(_out);
+        while ((readLength = reader.read(buffer)) != -1) {
+            writer.write(buffer, 0, readLength);
+        }
+        writer.flush();
+    }
+    /**
+     * Runs a file job with its input, output and cipher
+     * metered and reports on stderr why it failed if it did
+     * @return true if the job succeeded
+     */
+    private static boolean manageFileJob(String _mode, int _key, InputStream _in, String _outPath, EncryptionStrategy _alg,
+                                         boolean _pipelined, boolean _byteMode, boolean _container, long[] _range,
+                                         JobStats _stats, long _progressMillis) {
+        CharTransformer transformer = new MeteredTransformer(_alg.stream(_key, _mode), _stats);
+        ByteTransformer byteTransformer = _byteMode ? _alg.byteStream(_key, _mode, Charset.defaultCharset()) : null;
+        if (byteTransformer != null) {
+            byteTransformer = new MeteredByteTransformer(byteTransformer, _stats);
+        }
+        InputStream in = new MeteredInputStream(_in, _stats);
+        FileOutputStream file = openOutputFile(_outPath);
+        OutputStream out = new MeteredOutputStream(file, _stats);
+        String error = null;
+        ProgressReporter progress = _progressMillis > 0 ? new ProgressReporter(_stats, _progressMillis, System.err) : null;
+        try {
+            if (_container && "enc".equals(_mode)) {
+                manageContainerOutput(transformer, in, out);
+            } else if (_container || _range != null) {
+                manageContainerInput(transformer, _in, out, _range, _stats);
+            } else if (_pipelined && byteTransformer != null) {
+                managePipelinedInput(byteTransformer, in, out);
+            } else if (_pipelined) {
+                managePipelinedInput(transformer, in, out);
+            } else if (byteTransformer != null) {
+                manageByteInput(byteTransformer, in, out);
+            } else {
+                manageFileInput(transformer, in, out);
+            }
+        } catch (IOException e) {
+            error = e.getMessage() == null ? e.toString() : e.getMessage();
+        } finally {
+            if (progress != null) {
+                progress.close();
             }
-        } else {
             try {
-                while ((readLength = _in.read(buffer)) != -1) {
-                    if (readLength < MAX_MEMORY_READ_BYTES) {
-                        byte[] newBuffer = new byte[readLength];
-                        System.arraycopy(buffer, 0, newBuffer, 0 ,readLength);
-                        buffer = newBuffer;
-                    }
-                    _out.print(_alg.decrypt(new String(buffer), _key));
+                if (file.getFD() != FileDescriptor.out) {
+                    file.close();
                 }
             } catch (IOException e) {
-                System.out.println(e.getMessage());
+                if (error == null) {
+                    error = e.getMessage() == null ? e.toString() : e.getMessage();
+                }
             }
         }
+        _stats.finish(error);
+        if (error != null) {
+            System.err.println("error: " + error);
+        }
+        return error == null;
     }
-    private static void closeResources(PrintStream _out, FileInputStream _in) {
-        if (_in != null) {
+    private static void writeStats(String path, JobStats _stats) {
+        if (STANDARD_STREAM.equals(path)) {
+            System.err.println(_stats.toJson());
+            return;
+        }
+        try (PrintStream ps = new PrintStream(new FileOutputStream(path))) {
+            ps.println(_stats.toJson());
+        } catch (IOException e) {
+            System.err.println("error: cannot write stats to " + path);
+        }
+    }
+    private static void closeResources(PrintStream _out, InputStream _in) {
+        if (_in != null && _in != System.in) {
             try {
                 _in.close();
             } catch (IOException e) {
@@ -201,19 +503,31 @@ public class Main {
             _out.close();
         }
     }
-    private static EncryptionStrategy parseAlgorithm(String arg) {
+    private static EncryptionStrategy parseAlgorithm(String arg, String keyword) {
         if ("unicode".equals(arg)) {
             return new UnicodeEncryption();
         }
+        if ("vigenere".equals(arg)) {
+            return new VigenereEncryption(keyword);
+        }
         return new AlphabetEncryption();
     }
     public static void main(String[] args) {
         String _mode = "enc";
         String _data = null;
         int _key = 0;
-        PrintStream _out = System.out;
-        FileInputStream _in = null;
+        String _outPath = STANDARD_STREAM;
+        InputStream _in = null;
         String _alg = "shift";
+        String _keyword = null;
+        boolean _pipeline = false;
+        boolean _byteMode = true;
+        long _progressMillis = 0;
+        boolean _container = false;
+        long[] _range = null;
+        String _statsPath = null;
+        boolean _succeeded = true;
+        boolean _inFailed = false;
         int len = args.length/2;
         for (int i = 0; i < len; i++){
             switch (args[2 * i]) {
@@ -228,22 +542,78 @@ public class Main {
                     break;
                 case "-in":
                     _in = parseInputFile(args[2 * i + 1]);
+                    _inFailed = _in == null;
                     break;
                 case "-out":
-                    _out = parseOutputFile(args[2 * i + 1]);
+                    _outPath = args[2 * i + 1];
                     break;
                 case "-alg":
                     _alg = args[2 * i + 1];
                     break;
+                case "-keyword":
+                    _keyword = args[2 * i + 1];
+                    break;
+                case "-pipeline":
+                    _pipeline = parsePipeline(args[2 * i + 1]);
+                    break;
+                case "-bytes":
+                    _byteMode = parseByteMode(args[2 * i + 1]);
+                    break;
+                case "-progress":
+                    _progressMillis = parseProgress(args[2 * i + 1]);
+                    break;
+                case "-stats":
+                    _statsPath = args[2 * i + 1];
+                    break;
+                case "-container":
+                    _container = parseContainer(args[2 * i + 1]);
+                    break;
+                case "-range":
+                    try {
+                        _range = parseRange(args[2 * i + 1]);
+                    } catch (NumberFormatException e) {
+                        System.err.println("error: " + e.getMessage());
+                        closeResources(null, _in);
+                        System.exit(1);
+                        return;
+                    }
+                    break;
                 default:
                     break;
             }
         }
+        if (_range != null && !"dec".equals(_mode)) {
+            System.err.println("error: -range can only be used to decrypt a container");
+            closeResources(null, _in);
+            System.exit(1);
+            return;
+        }
+        EncryptionStrategy algorithm;
+        try {
+            algorithm = parseAlgorithm(_alg, _keyword);
+        } catch (IllegalArgumentException e) {
+            System.err.println("error: " + e.getMessage());
+            closeResources(null, _in);
+            System.exit(1);
+            return;
+        }
         if (_data != null) {
-            manageCMDInput(_mode, _key, _data, _out, parseAlgorithm(_alg));
+            PrintStream _out = parseOutputFile(_outPath);
+            manageCMDInput(_mode, _key, _data, _out, algorithm);
+            closeResources(_out, null);
         } else if (_in != null){
-            manageFileInput(_mode, _key, _in, _out, parseAlgorithm(_alg));
+            JobStats stats = new JobStats(_mode, _alg);
+            _succeeded = manageFileJob(_mode, _key, _in, _outPath, algorithm,
+                    _pipeline || _in == System.in, _byteMode, _container, _range, stats, _progressMillis);
+            if (_statsPath != null) {
+                writeStats(_statsPath, stats);
+            }
+        } else if (_inFailed) {
+            _succeeded = false;
+        }
+        closeResources(null, _in);
+        if (!_succeeded) {
+            System.exit(1);
         }
-        closeResources(_out, _in);
     }
 }
@@ -0,0 +1,24 @@
+package encryptdecrypt;
+
+import java.nio.ByteBuffer;
+
+/**
+ * Times every transform call and reports the bytes
+ * transformed to a {@link JobMetrics}
+ */
+class MeteredByteTransformer implements ByteTransformer {
+    private final ByteTransformer transformer;
+    private final JobMetrics metrics;
+
+    MeteredByteTransformer(ByteTransformer transformer, JobMetrics metrics) {
+        this.transformer = transformer;
+        this.metrics = metrics;
+    }
+
+    @Override
+    public void transform(ByteBuffer bytes) {
+        long start = System.nanoTime();
+        transformer.transform(bytes);
+        metrics.charsTransformed(bytes.remaining(), System.nanoTime() - start);
+    }
+}
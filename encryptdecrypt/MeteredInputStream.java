@@ -0,0 +1,32 @@
+package encryptdecrypt;
+
+import java.io.*;
+
+/**
+ * Times every read and reports the bytes
+ * read to a {@link JobMetrics}
+ */
+class MeteredInputStream extends FilterInputStream {
+    private final JobMetrics metrics;
+
+    MeteredInputStream(InputStream in, JobMetrics metrics) {
+        super(in);
+        this.metrics = metrics;
+    }
+
+    @Override
+    public int read() throws IOException {
+        long start = System.nanoTime();
+        int b = in.read();
+        metrics.bytesRead(b == -1 ? 0 : 1, System.nanoTime() - start);
+        return b;
+    }
+
+    @Override
+    public int read(byte[] b, int off, int len) throws IOException {
+        long start = System.nanoTime();
+        int n = in.read(b, off, len);
+        metrics.bytesRead(Math.max(n, 0), System.nanoTime() - start);
+        return n;
+    }
+}
@@ -0,0 +1,30 @@
+package encryptdecrypt;
+
+import java.io.*;
+
+/**
+ * Times every write and reports the bytes
+ * written to a {@link JobMetrics}
+ */
+class MeteredOutputStream extends FilterOutputStream {
+    private final JobMetrics metrics;
+
+    MeteredOutputStream(OutputStream out, JobMetrics metrics) {
+        super(out);
+        this.metrics = metrics;
+    }
+
+    @Override
+    public void write(int b) throws IOException {
+        long start = System.nanoTime();
+        out.write(b);
+        metrics.bytesWritten(1, System.nanoTime() - start);
+    }
+
+    @Override
+    public void write(byte[] b, int off, int len) throws IOException {
+        long start = System.nanoTime();
+        out.write(b, off, len);
+        metrics.bytesWritten(len, System.nanoTime() - start);
+    }
+}
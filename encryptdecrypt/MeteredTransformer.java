@@ -0,0 +1,27 @@
+package encryptdecrypt;
+
+/**
+ * Times every transform call and reports the chars
+ * transformed to a {@link JobMetrics}
+ */
+class MeteredTransformer implements CharTransformer {
+    private final CharTransformer transformer;
+    private final JobMetrics metrics;
+
+    MeteredTransformer(CharTransformer transformer, JobMetrics metrics) {
+        this.transformer = transformer;
+        this.metrics = metrics;
+    }
+
+    @Override
+    public void transform(char[] chars, int offset, int length) {
+        long start = System.nanoTime();
+        transformer.transform(chars, offset, length);
+        metrics.charsTransformed(length, System.nanoTime() - start);
+    }
+
+    @Override
+    public void seek(long position) {
+        transformer.seek(position);
+    }
+}
@@ -0,0 +1,264 @@
+package encryptdecrypt;
+
+import java.io.*;
+import java.nio.ByteBuffer;
+import java.nio.CharBuffer;
+import java.nio.charset.*;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+
+/**
+ * Processes a stream with three stages running on their own threads:
+ * a reader, a transformer and a writer. The stages are connected by
+ * bounded queues and the byte buffers are recycled between them, so
+ * the I/O of one chunk overlaps with the cipher work of the next.
+ * In byte mode a chunk is transformed in place and goes from the
+ * transformer straight to the writer, which hands it back to the reader.
+ */
+class PipelineProcessor {
+    private static final int BUFFER_SIZE;
+    private static final int BUFFER_COUNT;
+    /**
+     * Room kept in the char buffers for what a previous chunk
+     * could not finish (a split multi byte sequence or surrogate)
+     */
+    private static final int SLACK;
+
+    static {
+        BUFFER_SIZE = 64 * 1024;
+        BUFFER_COUNT = 4;
+        SLACK = 16;
+    }
+
+    /**
+     * A recyclable unit of work, the end of stream is
+     * signalled by a chunk with negative length
+     */
+    private static class Chunk {
+        final byte[] data;
+        /**
+         * The queue of free chunks this one is returned to
+         */
+        final BlockingQueue<Chunk> pool;
+        int length;
+
+        Chunk(int size, BlockingQueue<Chunk> pool) {
+            data = new byte[size];
+            this.pool = pool;
+        }
+    }
+
+    private static final Chunk END_OF_STREAM = new Chunk(0, null);
+
+    static {
+        END_OF_STREAM.length = -1;
+    }
+
+    private final CharTransformer transformer;
+    private final Charset charset;
+    private final ByteTransformer byteTransformer;
+
+    private final BlockingQueue<Chunk> freeInput = new ArrayBlockingQueue<>(BUFFER_COUNT);
+    private final BlockingQueue<Chunk> readQueue = new ArrayBlockingQueue<>(BUFFER_COUNT + 1);
+    private final BlockingQueue<Chunk> freeOutput = new ArrayBlockingQueue<>(BUFFER_COUNT);
+    private final BlockingQueue<Chunk> writeQueue = new ArrayBlockingQueue<>(BUFFER_COUNT + 1);
+
+    private Thread[] stages;
+    private Throwable failure;
+
+    PipelineProcessor(CharTransformer transformer, Charset charset) {
+        this.transformer = transformer;
+        this.charset = charset;
+        this.byteTransformer = null;
+        for (int i = 0; i < BUFFER_COUNT; i++) {
+            freeInput.add(new Chunk(BUFFER_SIZE, freeInput));
+            freeOutput.add(new Chunk(BUFFER_SIZE, freeOutput));
+        }
+    }
+
+    PipelineProcessor(ByteTransformer byteTransformer) {
+        this.transformer = null;
+        this.charset = null;
+        this.byteTransformer = byteTransformer;
+        for (int i = 0; i < BUFFER_COUNT; i++) {
+            freeInput.add(new Chunk(BUFFER_SIZE, freeInput));
+        }
+    }
+
+    /**
+     * Runs the pipeline until the input is exhausted and
+     * everything has been written to the output.
+     * Neither of the streams is closed.
+     * @param in the input to read from
+     * @param out the output to write to
+     * @throws IOException the first error raised by any of the stages
+     */
+    void process(InputStream in, OutputStream out) throws IOException {
+        Thread reader = new Thread(() -> readStage(in), "encryptdecrypt-reader");
+        Thread transformer = new Thread(byteTransformer != null ? this::transformBytesStage : this::transformStage,
+                "encryptdecrypt-transformer");
+        Thread writer = new Thread(() -> writeStage(out), "encryptdecrypt-writer");
+        /* the reader may stay blocked on a pipe that never
+           delivers more data after a failure downstream
+         */
+        reader.setDaemon(true);
+        transformer.setDaemon(true);
+        synchronized (this) {
+            stages = new Thread[]{reader, transformer, writer};
+        }
+        reader.start();
+        transformer.start();
+        writer.start();
+        /* the writer is always the last stage to finish and
+           a failure in any stage interrupts it
+         */
+        try {
+            writer.join();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            fail(e);
+        }
+        Throwable cause;
+        synchronized (this) {
+            cause = failure;
+        }
+        if (cause instanceof IOException) {
+            throw (IOException) cause;
+        } else if (cause != null) {
+            throw new IOException(cause);
+        }
+    }
+
+    private synchronized void fail(Throwable e) {
+        if (failure != null) {
+            return;
+        }
+        failure = e;
+        for (Thread stage : stages) {
+            if (stage != Thread.currentThread()) {
+                stage.interrupt();
+            }
+        }
+    }
+
+    private void readStage(InputStream in) {
+        try {
+            while (true) {
+                Chunk chunk = freeInput.take();
+                chunk.length = in.read(chunk.data);
+                if (chunk.length < 0) {
+                    readQueue.put(END_OF_STREAM);
+                    return;
+                }
+                readQueue.put(chunk);
+            }
+        } catch (InterruptedException e) {
+            // another stage failed and already recorded the cause
+        } catch (IOException | RuntimeException e) {
+            fail(e);
+        }
+    }
+
+    private void transformBytesStage() {
+        try {
+            Chunk chunk;
+            while ((chunk = readQueue.take()) != END_OF_STREAM) {
+                byteTransformer.transform(ByteBuffer.wrap(chunk.data, 0, chunk.length));
+                writeQueue.put(chunk);
+            }
+            writeQueue.put(END_OF_STREAM);
+        } catch (InterruptedException e) {
+            // another stage failed and already recorded the cause
+        } catch (RuntimeException e) {
+            fail(e);
+        }
+    }
+
+    private void transformStage() {
+        CharsetDecoder decoder = charset.newDecoder()
+                .onMalformedInput(CodingErrorAction.REPLACE)
+                .onUnmappableCharacter(CodingErrorAction.REPLACE);
+        /* same replacement behaviour as the PrintStream
+           used by the sequential mode
+         */
+        CharsetEncoder encoder = charset.newEncoder()
+                .onMalformedInput(CodingErrorAction.REPLACE)
+                .onUnmappableCharacter(CodingErrorAction.REPLACE);
+        ByteBuffer pending = ByteBuffer.allocate(BUFFER_SIZE + SLACK);
+        CharBuffer chars = CharBuffer.allocate(BUFFER_SIZE + SLACK);
+        try {
+            Chunk out = freeOutput.take();
+            ByteBuffer outBuffer = ByteBuffer.wrap(out.data);
+            boolean endOfInput = false;
+            while (!endOfInput) {
+                Chunk chunk = readQueue.take();
+                if (chunk == END_OF_STREAM) {
+                    endOfInput = true;
+                } else {
+                    pending.put(chunk.data, 0, chunk.length);
+                    freeInput.put(chunk);
+                }
+                pending.flip();
+                CoderResult result;
+                do {
+                    /* chars left over by the encoder are
+                       already transformed
+                     */
+                    int transformed = chars.position();
+                    result = decoder.decode(pending, chars, endOfInput);
+                    if (endOfInput && !result.isOverflow()) {
+                        result = decoder.flush(chars);
+                    }
+                    chars.flip();
+                    transformer.transform(chars.array(), transformed, chars.limit() - transformed);
+                    while (encoder.encode(chars, outBuffer, endOfInput && !result.isOverflow()).isOverflow()) {
+                        out = emit(out, outBuffer);
+                        outBuffer = ByteBuffer.wrap(out.data);
+                    }
+                    chars.compact();
+                } while (result.isOverflow());
+                pending.compact();
+            }
+            while (encoder.flush(outBuffer).isOverflow()) {
+                out = emit(out, outBuffer);
+                outBuffer = ByteBuffer.wrap(out.data);
+            }
+            if (outBuffer.position() > 0) {
+                emit(out, outBuffer);
+            }
+            writeQueue.put(END_OF_STREAM);
+        } catch (InterruptedException e) {
+            // another stage failed and already recorded the cause
+        } catch (RuntimeException e) {
+            fail(e);
+        }
+    }
+
+    /**
+     * Hands a filled output chunk to the writer and
+     * returns a free one to continue with
+     */
+    private Chunk emit(Chunk out, ByteBuffer outBuffer) throws InterruptedException {
+        out.length = outBuffer.position();
+        writeQueue.put(out);
+        return freeOutput.take();
+    }
+
+    private void writeStage(OutputStream out) {
+        try {
+            while (true) {
+                Chunk chunk = writeQueue.take();
+                if (chunk == END_OF_STREAM) {
+                    out.flush();
+                    break;
+                }
+                out.write(chunk.data, 0, chunk.length);
+                chunk.pool.put(chunk);
+            }
+        } catch (InterruptedException e) {
+            // another stage failed and already recorded the cause
+        } catch (IOException | RuntimeException e) {
+            fail(e);
+        }
+    }
+}
@@ -0,0 +1,31 @@
+package encryptdecrypt;
+
+import java.io.PrintStream;
+
+/**
+ * Prints the progress of a job at a fixed interval
+ * from a daemon thread until it is closed
+ */
+class ProgressReporter implements AutoCloseable {
+    private final Thread thread;
+
+    ProgressReporter(JobStats stats, long intervalMillis, PrintStream out) {
+        thread = new Thread(() -> {
+            try {
+                while (true) {
+                    Thread.sleep(intervalMillis);
+                    out.println(stats.progressLine());
+                }
+            } catch (InterruptedException e) {
+                // closed
+            }
+        }, "encryptdecrypt-progress");
+        thread.setDaemon(true);
+        thread.start();
+    }
+
+    @Override
+    public void close() {
+        thread.interrupt();
+    }
+}